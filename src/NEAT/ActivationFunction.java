@@ -0,0 +1,199 @@
+package NEAT;
+
+/**
+ * activation functions a node can use to turn the weighted sum of its inputs into its value
+ *
+ * the fast functions interpolate a table of the steepened sigmoid and stay within MAX_FAST_ERROR of
+ * the exact function, they avoid Math.exp which dominates evaluation cost
+ */
+public enum ActivationFunction {
+
+    /**
+     * 1 / (1 + exp(-4.9 * x))
+     */
+    STEEPENED_SIGMOID("steepenedSigmoid"),
+
+    /**
+     * table interpolated steepened sigmoid, within MAX_FAST_ERROR of STEEPENED_SIGMOID
+     */
+    FAST_SIGMOID("fastSigmoid"),
+
+    /**
+     * max(0, x)
+     */
+    RELU("relu"),
+
+    /**
+     * tanh(x) derived from the sigmoid table, within MAX_FAST_ERROR of Math.tanh
+     */
+    FAST_TANH("fastTanh");
+
+    /**
+     * maximum absolute error of the table interpolated functions
+     */
+    public static final double MAX_FAST_ERROR = 1e-4;
+
+    // the steepened sigmoid is tabled over [-RANGE, RANGE], outside it is within 5e-6 of 0 or 1
+    // linear interpolation error is at most step^2 / 8 * max|f''| which is below 3e-5 for 512 steps
+    private static final double TABLE_RANGE = 2.5;
+    private static final int TABLE_STEPS = 512;
+    private static final double TABLE_SCALE = TABLE_STEPS / (2 * TABLE_RANGE);
+    private static final double[] SIGMOID_TABLE = new double[TABLE_STEPS + 1];
+    private static final float[] FLOAT_SIGMOID_TABLE = new float[TABLE_STEPS + 1];
+
+    static {
+        for (int i = 0; i <= TABLE_STEPS; i++) {
+            SIGMOID_TABLE[i] = steepenedSigmoid(i / TABLE_SCALE - TABLE_RANGE);
+            FLOAT_SIGMOID_TABLE[i] = (float) SIGMOID_TABLE[i];
+        }
+    }
+
+    private final String methodName;
+
+    ActivationFunction(String methodName) {
+        this.methodName = methodName;
+    }
+
+    /**
+     * apply the function
+     *
+     * @param x the weighted sum of the inputs
+     * @return the node value
+     */
+    public double apply(double x) {
+        switch (this) {
+            case FAST_SIGMOID:
+                return fastSigmoid(x);
+            case RELU:
+                return relu(x);
+            case FAST_TANH:
+                return fastTanh(x);
+            default:
+                return steepenedSigmoid(x);
+        }
+    }
+
+    /**
+     * apply the function in single precision, see NEATConfig.FLOAT_EVALUATION
+     *
+     * @param x the weighted sum of the inputs
+     * @return the node value
+     */
+    public float apply(float x) {
+        switch (this) {
+            case FAST_SIGMOID:
+                return fastSigmoid(x);
+            case RELU:
+                return relu(x);
+            case FAST_TANH:
+                return fastTanh(x);
+            default:
+                return steepenedSigmoid(x);
+        }
+    }
+
+    /**
+     * @return name of the static method implementing the function, used by the NetworkCompiler
+     */
+    String getMethodName() {
+        return methodName;
+    }
+
+    /**
+     * calculate the sigmoid function ->  1 / (1 + exp(-4.9 * x))
+     *
+     * @param x value
+     * @return the sigmoid of x
+     */
+    public static double steepenedSigmoid(double x) {
+        return (1 / (1 + Math.exp(-4.9 * x)));
+    }
+
+    /**
+     * approximate the steepened sigmoid by interpolating the table
+     *
+     * @param x value
+     * @return the sigmoid of x within MAX_FAST_ERROR
+     */
+    public static double fastSigmoid(double x) {
+        double position = (x + TABLE_RANGE) * TABLE_SCALE;
+        if (position <= 0) {
+            return SIGMOID_TABLE[0];
+        }
+        if (position >= TABLE_STEPS) {
+            return SIGMOID_TABLE[TABLE_STEPS];
+        }
+        int index = (int) position;
+        double fraction = position - index;
+        return SIGMOID_TABLE[index] + fraction * (SIGMOID_TABLE[index + 1] - SIGMOID_TABLE[index]);
+    }
+
+    /**
+     * rectified linear unit
+     *
+     * @param x value
+     * @return max(0, x)
+     */
+    public static double relu(double x) {
+        return x > 0 ? x : 0;
+    }
+
+    /**
+     * approximate tanh with the sigmoid table -> tanh(x) = 2 * sigmoid(2x) - 1
+     *
+     * @param x value
+     * @return the tanh of x within MAX_FAST_ERROR
+     */
+    public static double fastTanh(double x) {
+        return 2 * fastSigmoid(x * (2 / 4.9)) - 1;
+    }
+
+    /**
+     * single precision steepened sigmoid
+     *
+     * @param x value
+     * @return the sigmoid of x
+     */
+    public static float steepenedSigmoid(float x) {
+        return (float) (1 / (1 + Math.exp(-4.9f * x)));
+    }
+
+    /**
+     * single precision table interpolated steepened sigmoid
+     *
+     * @param x value
+     * @return the sigmoid of x within MAX_FAST_ERROR
+     */
+    public static float fastSigmoid(float x) {
+        float position = (x + (float) TABLE_RANGE) * (float) TABLE_SCALE;
+        if (position <= 0) {
+            return FLOAT_SIGMOID_TABLE[0];
+        }
+        if (position >= TABLE_STEPS) {
+            return FLOAT_SIGMOID_TABLE[TABLE_STEPS];
+        }
+        int index = (int) position;
+        float fraction = position - index;
+        return FLOAT_SIGMOID_TABLE[index] + fraction * (FLOAT_SIGMOID_TABLE[index + 1] - FLOAT_SIGMOID_TABLE[index]);
+    }
+
+    /**
+     * single precision rectified linear unit
+     *
+     * @param x value
+     * @return max(0, x)
+     */
+    public static float relu(float x) {
+        return x > 0 ? x : 0;
+    }
+
+    /**
+     * single precision tanh from the sigmoid table
+     *
+     * @param x value
+     * @return the tanh of x within MAX_FAST_ERROR
+     */
+    public static float fastTanh(float x) {
+        return 2 * fastSigmoid(x * (2 / 4.9f)) - 1;
+    }
+}
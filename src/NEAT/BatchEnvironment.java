@@ -0,0 +1,15 @@
+package NEAT;
+
+/**
+ * an environment which can assign fitness to a batch of genomes sharing the same topology
+ * the gene pool hands it batches instead of the whole population when NEATConfig.GROUP_BY_TOPOLOGY is set
+ */
+public interface BatchEnvironment extends Environment {
+
+    /**
+     * assign fitness to all genomes in the batch
+     *
+     * @param batch genomes sharing the same topology
+     */
+    void evaluateFitness(GenomeBatch batch);
+}
@@ -0,0 +1,199 @@
+package NEAT;
+
+import java.util.Arrays;
+
+/**
+ * k-d tree of behaviour descriptors for novelty search, see NoveltyEnvironment
+ * behaviours are inserted one at a time below the existing tree, and the tree is rebuilt balanced each
+ * time its size doubles so nearest neighbour queries stay logarithmic as the archive grows
+ *
+ * queries may run in parallel with each other but not with add
+ */
+public class BehaviourArchive {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final int dimensions;
+    private double[][] points = new double[INITIAL_CAPACITY][];
+    private int[] left = new int[INITIAL_CAPACITY];
+    private int[] right = new int[INITIAL_CAPACITY];
+    private int size = 0;
+    private int root = -1;
+    private int balancedSize = 0;
+
+    /**
+     * @param dimensions the number of values in a behaviour descriptor
+     */
+    public BehaviourArchive(int dimensions) {
+        this.dimensions = dimensions;
+    }
+
+    /**
+     * add a behaviour to the archive
+     *
+     * @param behaviour the behaviour descriptor, copied so the caller may reuse its array
+     */
+    public void add(double[] behaviour) {
+        if (behaviour.length != dimensions) {
+            throw new IllegalArgumentException("behaviour has " + behaviour.length + " values but the archive has " + dimensions);
+        }
+        behaviour = behaviour.clone();
+        if (size == points.length) {
+            points = Arrays.copyOf(points, size * 2);
+            left = Arrays.copyOf(left, size * 2);
+            right = Arrays.copyOf(right, size * 2);
+        }
+        int index = size++;
+        points[index] = behaviour;
+        left[index] = -1;
+        right[index] = -1;
+
+        if (size >= 2 * balancedSize) {
+            rebuild();
+            return;
+        }
+
+        // walk down to an empty branch
+        int node = root;
+        int depth = 0;
+        while (true) {
+            int axis = depth % dimensions;
+            if (behaviour[axis] < points[node][axis]) {
+                if (left[node] < 0) {
+                    left[node] = index;
+                    return;
+                }
+                node = left[node];
+            } else {
+                if (right[node] < 0) {
+                    right[node] = index;
+                    return;
+                }
+                node = right[node];
+            }
+            depth++;
+        }
+    }
+
+    /**
+     * find the squared distances to the nearest behaviours, merged into an existing sorted list so
+     * several archives can be searched together
+     *
+     * @param behaviour the behaviour to search around
+     * @param nearest squared distances found so far in ascending order, the capacity is the number wanted
+     * @param count the number of distances already in nearest
+     * @return the number of distances in nearest
+     */
+    public int nearest(double[] behaviour, double[] nearest, int count) {
+        if (root < 0) {
+            return count;
+        }
+        int[] nodes = new int[64];
+        int[] depths = new int[64];
+        double[] bounds = new double[64];
+        int top = 0;
+        nodes[top] = root;
+        depths[top] = 0;
+        bounds[top++] = 0;
+
+        while (top > 0) {
+            top--;
+            int node = nodes[top];
+            int depth = depths[top];
+            if (count == nearest.length && bounds[top] >= nearest[count - 1]) {
+                continue;
+            }
+
+            count = insert(nearest, count, squaredDistance(behaviour, points[node]));
+
+            int axis = depth % dimensions;
+            double difference = behaviour[axis] - points[node][axis];
+            int near = difference < 0 ? left[node] : right[node];
+            int far = difference < 0 ? right[node] : left[node];
+
+            if (top + 2 > nodes.length) {
+                nodes = Arrays.copyOf(nodes, nodes.length * 2);
+                depths = Arrays.copyOf(depths, depths.length * 2);
+                bounds = Arrays.copyOf(bounds, bounds.length * 2);
+            }
+            // push the far side first so the near side is searched first
+            if (far >= 0) {
+                nodes[top] = far;
+                depths[top] = depth + 1;
+                bounds[top++] = difference * difference;
+            }
+            if (near >= 0) {
+                nodes[top] = near;
+                depths[top] = depth + 1;
+                bounds[top++] = 0;
+            }
+        }
+        return count;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    /**
+     * rebuild the whole tree balanced, splitting on the median of each axis in turn
+     */
+    private void rebuild() {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+            left[i] = -1;
+            right[i] = -1;
+        }
+        root = build(order, 0, size, 0);
+        balancedSize = size;
+    }
+
+    private int build(Integer[] order, int from, int to, int depth) {
+        if (from >= to) {
+            return -1;
+        }
+        int axis = depth % dimensions;
+        Arrays.sort(order, from, to, (a, b) -> Double.compare(points[a][axis], points[b][axis]));
+        int middle = (from + to) >>> 1;
+        // equal values go right when inserting, so the median must be the first of its value
+        while (middle > from && points[order[middle - 1]][axis] == points[order[middle]][axis]) {
+            middle--;
+        }
+        int node = order[middle];
+        left[node] = build(order, from, middle, depth + 1);
+        right[node] = build(order, middle + 1, to, depth + 1);
+        return node;
+    }
+
+    /**
+     * insert a distance into a sorted list, dropping the largest if the list is full
+     */
+    private static int insert(double[] nearest, int count, double distance) {
+        if (count == nearest.length) {
+            if (distance >= nearest[count - 1]) {
+                return count;
+            }
+            count--;
+        }
+        int i = count;
+        while (i > 0 && nearest[i - 1] > distance) {
+            nearest[i] = nearest[i - 1];
+            i--;
+        }
+        nearest[i] = distance;
+        return count + 1;
+    }
+
+    private static double squaredDistance(double[] a, double[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            double difference = a[i] - b[i];
+            sum += difference * difference;
+        }
+        return sum;
+    }
+}
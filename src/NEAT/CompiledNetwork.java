@@ -0,0 +1,16 @@
+package NEAT;
+
+/**
+ * a genome network which has been compiled into straight-line bytecode
+ * produced by the NetworkCompiler, behaves exactly like Genome.evaluateNetwork
+ */
+public interface CompiledNetwork {
+
+    /**
+     * takes the inputs and returns the output
+     *
+     * @param inputs the inputs to the process
+     * @return outputs for the given input
+     */
+    double[] evaluate(double[] inputs);
+}
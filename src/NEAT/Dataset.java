@@ -0,0 +1,252 @@
+package NEAT;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/**
+ * tabular dataset of input and target columns stored in a columnar binary file which is memory mapped,
+ * opening a dataset does not read it and the values never live on the heap
+ *
+ * file format, little endian:
+ * int magic, int version, long rows, int input columns, int target columns, 8 bytes padding,
+ * then each input column followed by each target column as rows doubles
+ *
+ * columns are mapped in chunks of CHUNK_ROWS rows since a single mapping is limited to 2GB
+ */
+public class Dataset implements AutoCloseable {
+    private static final int MAGIC = 0x4E454154;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int CHUNK_SHIFT = 27;
+    private static final long CHUNK_ROWS = 1L << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = (int) CHUNK_ROWS - 1;
+
+    private final FileChannel channel;
+    private final long rows;
+    private final int inputColumns;
+    private final int targetColumns;
+    private final DoubleBuffer[][] columns;
+    private final ArrayList<MappedByteBuffer> mappings = new ArrayList<>();
+
+    private Dataset(FileChannel channel, FileChannel.MapMode mode, long rows, int inputColumns, int targetColumns) throws IOException {
+        this.channel = channel;
+        this.rows = rows;
+        this.inputColumns = inputColumns;
+        this.targetColumns = targetColumns;
+
+        int chunks = (int) ((rows + CHUNK_ROWS - 1) / CHUNK_ROWS);
+        columns = new DoubleBuffer[inputColumns + targetColumns][chunks];
+        for (int column = 0; column < columns.length; column++) {
+            long columnStart = HEADER_BYTES + column * rows * Double.BYTES;
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                long chunkRows = Math.min(CHUNK_ROWS, rows - chunk * CHUNK_ROWS);
+                MappedByteBuffer buffer = channel.map(mode, columnStart + chunk * CHUNK_ROWS * Double.BYTES, chunkRows * Double.BYTES);
+                mappings.add(buffer);
+                columns[column][chunk] = buffer.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+            }
+        }
+    }
+
+    /**
+     * open an existing dataset file read only
+     *
+     * @param path the dataset file
+     * @return the dataset
+     * @throws IOException if the file can not be read or is not a dataset
+     */
+    public static Dataset open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // keep reading until the header is complete
+            }
+            header.flip();
+            if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC) {
+                throw new IOException("not a dataset file: " + path);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("unsupported dataset version " + version + ": " + path);
+            }
+            long rows = header.getLong();
+            int inputColumns = header.getInt();
+            int targetColumns = header.getInt();
+            if (channel.size() < HEADER_BYTES + rows * (inputColumns + targetColumns) * Double.BYTES) {
+                throw new IOException("dataset file is truncated: " + path);
+            }
+            return new Dataset(channel, FileChannel.MapMode.READ_ONLY, rows, inputColumns, targetColumns);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * create a new dataset file of the given size mapped for writing, fill it with setInput and setTarget
+     *
+     * @param path the dataset file, replaced if it exists
+     * @param rows the number of rows
+     * @param inputColumns the number of input columns
+     * @param targetColumns the number of target columns
+     * @return the writable dataset
+     * @throws IOException if the file can not be created
+     */
+    public static Dataset create(Path path, long rows, int inputColumns, int targetColumns) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putLong(rows).putInt(inputColumns).putInt(targetColumns);
+            header.clear();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            return new Dataset(channel, FileChannel.MapMode.READ_WRITE, rows, inputColumns, targetColumns);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * write in memory rows to a new dataset file
+     *
+     * @param path the dataset file, replaced if it exists
+     * @param inputs the inputs of each row
+     * @param targets the targets of each row
+     * @throws IOException if the file can not be written
+     */
+    public static void write(Path path, double[][] inputs, double[][] targets) throws IOException {
+        if (inputs.length != targets.length) {
+            throw new IllegalArgumentException("inputs and targets must have the same number of rows");
+        }
+        int inputColumns = inputs.length == 0 ? 0 : inputs[0].length;
+        int targetColumns = targets.length == 0 ? 0 : targets[0].length;
+        try (Dataset dataset = create(path, inputs.length, inputColumns, targetColumns)) {
+            for (int row = 0; row < inputs.length; row++) {
+                for (int column = 0; column < inputColumns; column++) {
+                    dataset.setInput(row, column, inputs[row][column]);
+                }
+                for (int column = 0; column < targetColumns; column++) {
+                    dataset.setTarget(row, column, targets[row][column]);
+                }
+            }
+            dataset.force();
+        }
+    }
+
+    public double getInput(long row, int column) {
+        return get(column, row);
+    }
+
+    public double getTarget(long row, int column) {
+        return get(inputColumns + column, row);
+    }
+
+    public void setInput(long row, int column, double value) {
+        set(column, row, value);
+    }
+
+    public void setTarget(long row, int column, double value) {
+        set(inputColumns + column, row, value);
+    }
+
+    /**
+     * copy the inputs of a row into an array, ready for Genome.evaluateNetwork or GenomeBatch.evaluate
+     *
+     * @param row the row
+     * @param inputs array of at least getInputColumns values
+     */
+    public void readInputs(long row, double[] inputs) {
+        int chunk = (int) (row >>> CHUNK_SHIFT);
+        int index = (int) row & CHUNK_MASK;
+        for (int column = 0; column < inputColumns; column++) {
+            inputs[column] = columns[column][chunk].get(index);
+        }
+    }
+
+    /**
+     * copy the targets of a row into an array
+     *
+     * @param row the row
+     * @param targets array of at least getTargetColumns values
+     */
+    public void readTargets(long row, double[] targets) {
+        int chunk = (int) (row >>> CHUNK_SHIFT);
+        int index = (int) row & CHUNK_MASK;
+        for (int column = 0; column < targetColumns; column++) {
+            targets[column] = columns[inputColumns + column][chunk].get(index);
+        }
+    }
+
+    /**
+     * zero-copy view of part of an input column, the view shares the mapped file
+     *
+     * @param column the input column
+     * @param chunk the chunk of CHUNK_ROWS rows, see getChunkCount
+     * @return read only view of the chunk
+     */
+    public DoubleBuffer getInputColumn(int column, int chunk) {
+        return columns[column][chunk].asReadOnlyBuffer();
+    }
+
+    /**
+     * zero-copy view of part of a target column, the view shares the mapped file
+     *
+     * @param column the target column
+     * @param chunk the chunk of CHUNK_ROWS rows, see getChunkCount
+     * @return read only view of the chunk
+     */
+    public DoubleBuffer getTargetColumn(int column, int chunk) {
+        return columns[inputColumns + column][chunk].asReadOnlyBuffer();
+    }
+
+    /**
+     * write changes made to a dataset from create back to the file
+     */
+    public void force() {
+        for (MappedByteBuffer mapping : mappings) {
+            mapping.force();
+        }
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public int getInputColumns() {
+        return inputColumns;
+    }
+
+    public int getTargetColumns() {
+        return targetColumns;
+    }
+
+    public int getChunkCount() {
+        return columns.length == 0 ? 0 : columns[0].length;
+    }
+
+    /**
+     * close the file, the mapping itself is released once the dataset is garbage collected
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private double get(int column, long row) {
+        return columns[column][(int) (row >>> CHUNK_SHIFT)].get((int) row & CHUNK_MASK);
+    }
+
+    private void set(int column, long row, double value) {
+        columns[column][(int) (row >>> CHUNK_SHIFT)].put((int) row & CHUNK_MASK, value);
+    }
+}
@@ -0,0 +1,119 @@
+package NEAT;
+
+import NEAT.config.NEATConfig;
+
+import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
+
+/**
+ * environment which scores genomes against every row of a dataset
+ * each output scores 1 - |target - output| per row and the fitness is the square of the total, the same
+ * as the bundled problems, override sampleScore and fitness for other measures
+ *
+ * the sample score bounds assume outputs and targets between 0 and 1, override getMinSampleScore and
+ * getMaxSampleScore if that does not hold
+ *
+ * scoring stops with a CancellationException if the thread is interrupted, see TimeBudgetedEnvironment
+ * scoreSamples keeps its activation state per call, so a single genome can be scored on several threads
+ * with scoreSamplesInParallel
+ */
+public class DatasetEnvironment implements BatchEnvironment, SampleEnvironment {
+    private static final long CANCELLATION_CHECK_MASK = 1023;
+
+    protected final Dataset dataset;
+
+    /**
+     * @param dataset the dataset, must have NEATConfig.INPUTS input columns and NEATConfig.OUTPUTS target columns
+     */
+    public DatasetEnvironment(Dataset dataset) {
+        if (dataset.getInputColumns() != NEATConfig.INPUTS || dataset.getTargetColumns() != NEATConfig.OUTPUTS) {
+            throw new IllegalArgumentException("dataset has " + dataset.getInputColumns() + " inputs and "
+                    + dataset.getTargetColumns() + " targets but the networks have " + NEATConfig.INPUTS
+                    + " inputs and " + NEATConfig.OUTPUTS + " outputs");
+        }
+        this.dataset = dataset;
+    }
+
+    @Override
+    public void evaluateFitness(ArrayList<Genome> population) {
+        for (Genome genome : population) {
+            genome.setFitness(fitness(scoreSamples(genome, 0, dataset.getRows())));
+        }
+    }
+
+    @Override
+    public double scoreSamples(Genome genome, long from, long to) {
+        double[] inputs = new double[NEATConfig.INPUTS];
+        double[] output = new double[NEATConfig.OUTPUTS];
+        NetworkState state = genome.createState(1);
+        double total = 0;
+        for (long row = from; row < to; row++) {
+            if ((row & CANCELLATION_CHECK_MASK) == 0 && Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("evaluation interrupted");
+            }
+            dataset.readInputs(row, inputs);
+            genome.evaluateNetwork(inputs, output, state);
+            for (int i = 0; i < NEATConfig.OUTPUTS; i++) {
+                total += sampleScore(output[i], dataset.getTarget(row, i));
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public long getSampleCount() {
+        return dataset.getRows();
+    }
+
+    @Override
+    public double getMinSampleScore() {
+        return 0;
+    }
+
+    @Override
+    public double getMaxSampleScore() {
+        return NEATConfig.OUTPUTS;
+    }
+
+    @Override
+    public void evaluateFitness(GenomeBatch batch) {
+        double[] totals = new double[batch.size()];
+        double[] inputs = new double[NEATConfig.INPUTS];
+        double[] targets = new double[NEATConfig.OUTPUTS];
+        double[] output = batch.createOutput();
+        for (long row = 0; row < dataset.getRows(); row++) {
+            dataset.readInputs(row, inputs);
+            dataset.readTargets(row, targets);
+            batch.evaluate(inputs, output);
+            for (int k = 0; k < batch.size(); k++) {
+                for (int i = 0; i < NEATConfig.OUTPUTS; i++) {
+                    totals[k] += sampleScore(output[k * NEATConfig.OUTPUTS + i], targets[i]);
+                }
+            }
+        }
+
+        for (int k = 0; k < batch.size(); k++) {
+            batch.getGenomes().get(k).setFitness(fitness(totals[k]));
+        }
+    }
+
+    /**
+     * score a single output of a single row
+     *
+     * @param output the output of the network
+     * @param target the target from the dataset
+     * @return the score
+     */
+    protected double sampleScore(double output, double target) {
+        return 1 - Math.abs(target - output);
+    }
+
+    @Override
+    public double fitness(double total) {
+        return total * total;
+    }
+
+    public Dataset getDataset() {
+        return dataset;
+    }
+}
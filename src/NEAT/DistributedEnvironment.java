@@ -0,0 +1,371 @@
+package NEAT;
+
+import NEAT.config.NEATConfig;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * coordinator for distributed fitness evaluation
+ * the population is split into batches of serialized genomes which are shipped over TCP to worker
+ * processes running EvaluationWorker, each worker has up to NEATConfig.WORKER_IN_FLIGHT batches
+ * outstanding so it never waits on the network, and the batches of a worker which dies are handed to
+ * the remaining workers
+ * a batch a worker has not answered within NEATConfig.WORKER_BATCH_TIMEOUT_MILLIS is handed to the other
+ * workers as well, the first answer wins and later ones are ignored, so a stalled worker which stays
+ * connected can not hold up the generation
+ */
+public class DistributedEnvironment implements Environment, AutoCloseable {
+    private static final long ACCEPT_BACKOFF_MILLIS = 10;
+    private static final long MAX_ACCEPT_BACKOFF_MILLIS = 5000;
+
+    private final ServerSocket serverSocket;
+    private final LinkedBlockingDeque<Batch> pending = new LinkedBlockingDeque<>();
+    private final CopyOnWriteArrayList<WorkerConnection> workers = new CopyOnWriteArrayList<>();
+    private final ArrayList<Process> processes = new ArrayList<>();
+    private volatile boolean closed = false;
+    private int nextBatchId = 0;
+
+    /**
+     * start listening for workers
+     *
+     * @param port the port to listen on, 0 picks a free port
+     * @throws IOException if the port can not be opened
+     */
+    public DistributedEnvironment(int port) throws IOException {
+        serverSocket = new ServerSocket(port);
+        Thread acceptor = new Thread(this::acceptWorkers, "NEAT-worker-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * start worker processes on this machine and wait for them to connect
+     * the workers run with the same class path as this process
+     *
+     * @param count the number of workers
+     * @param environmentClass the environment the workers evaluate with, needs a no argument constructor
+     * @throws IOException if a process can not be started
+     */
+    public void spawnLocalWorkers(int count, Class<? extends Environment> environmentClass) throws IOException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        int expected = workers.size() + count;
+        for (int i = 0; i < count; i++) {
+            ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    EvaluationWorker.class.getName(), "localhost", String.valueOf(getPort()), environmentClass.getName());
+            builder.inheritIO();
+            processes.add(builder.start());
+        }
+        if (!awaitWorkers(expected, NEATConfig.WORKER_TIMEOUT_MILLIS)) {
+            throw new IllegalStateException("only " + workers.size() + " of " + expected + " workers connected");
+        }
+    }
+
+    /**
+     * wait until the given number of workers are connected
+     *
+     * @param count the number of workers
+     * @param timeoutMillis how long to wait
+     * @return boolean indicating if the workers connected in time
+     */
+    public boolean awaitWorkers(int count, long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (workers.size() < count) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void evaluateFitness(ArrayList<Genome> population) {
+        int batchCount = (population.size() + NEATConfig.WORKER_BATCH_SIZE - 1) / NEATConfig.WORKER_BATCH_SIZE;
+        CountDownLatch done = new CountDownLatch(batchCount);
+        for (int start = 0; start < population.size(); start += NEATConfig.WORKER_BATCH_SIZE) {
+            int end = Math.min(start + NEATConfig.WORKER_BATCH_SIZE, population.size());
+            pending.add(new Batch(nextBatchId++, new ArrayList<>(population.subList(start, end)), done));
+        }
+
+        // wait for the batches, giving up if there are no workers for too long
+        long lastProgress = System.currentTimeMillis();
+        long remaining = done.getCount();
+        try {
+            while (!done.await(100, TimeUnit.MILLISECONDS)) {
+                long now = System.currentTimeMillis();
+                for (WorkerConnection worker : workers) {
+                    worker.requeueExpired(now);
+                }
+                if (done.getCount() < remaining || !workers.isEmpty()) {
+                    remaining = done.getCount();
+                    lastProgress = System.currentTimeMillis();
+                } else if (System.currentTimeMillis() - lastProgress > NEATConfig.WORKER_TIMEOUT_MILLIS) {
+                    pending.clear();
+                    throw new IllegalStateException("no workers left to evaluate fitness");
+                }
+            }
+        } catch (InterruptedException e) {
+            pending.clear();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while evaluating fitness", e);
+        }
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getWorkerCount() {
+        return workers.size();
+    }
+
+    /**
+     * stop listening, disconnect the workers and stop any spawned worker processes
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // already closed
+        }
+        for (WorkerConnection worker : workers) {
+            worker.fail();
+        }
+        for (Process process : processes) {
+            process.destroy();
+        }
+    }
+
+    /**
+     * body of the acceptor thread, backs off while accepting keeps failing, for example when out of file
+     * descriptors, and stops once the server socket is closed
+     */
+    private void acceptWorkers() {
+        long backoff = ACCEPT_BACKOFF_MILLIS;
+        while (!closed && !serverSocket.isClosed()) {
+            Socket socket = null;
+            try {
+                socket = serverSocket.accept();
+                WorkerConnection worker = new WorkerConnection(socket);
+                workers.add(worker);
+                worker.start();
+                backoff = ACCEPT_BACKOFF_MILLIS;
+            } catch (IOException e) {
+                if (closed || serverSocket.isClosed()) {
+                    return;
+                }
+                System.err.println("failed to accept worker, retrying in " + backoff + " ms: " + e.getMessage());
+                if (socket != null) {
+                    try {
+                        socket.close();
+                    } catch (IOException closeFailure) {
+                        // the worker is dropped either way
+                    }
+                }
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+                backoff = Math.min(2 * backoff, MAX_ACCEPT_BACKOFF_MILLIS);
+            }
+        }
+    }
+
+    /**
+     * a batch of genomes, serialized once so it can be sent again if a worker dies
+     */
+    private static class Batch {
+        private final int id;
+        private final ArrayList<Genome> genomes;
+        private final CountDownLatch done;
+        private final byte[] request;
+        private final AtomicBoolean completed = new AtomicBoolean();
+
+        Batch(int id, ArrayList<Genome> genomes, CountDownLatch done) {
+            this.id = id;
+            this.genomes = genomes;
+            this.done = done;
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeInt(id);
+                out.writeInt(genomes.size());
+                for (Genome genome : genomes) {
+                    genome.writeTo(out);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            this.request = bytes.toByteArray();
+        }
+
+        /**
+         * set the fitness of the genomes, only the first answer for a batch sent to several workers counts
+         */
+        void complete(double[] fitness) {
+            if (!completed.compareAndSet(false, true)) {
+                return;
+            }
+            for (int i = 0; i < genomes.size(); i++) {
+                genomes.get(i).setFitness(fitness[i]);
+            }
+            done.countDown();
+        }
+
+        boolean isCompleted() {
+            return completed.get();
+        }
+    }
+
+    /**
+     * connection to a single worker, one thread sends batches while another receives the results
+     */
+    private class WorkerConnection {
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private final Semaphore inFlightLimit = new Semaphore(NEATConfig.WORKER_IN_FLIGHT);
+        private final HashMap<Integer, Batch> inFlight = new HashMap<>();
+        private final HashMap<Integer, Long> deadlines = new HashMap<>();
+        private final Thread sender = new Thread(this::send, "NEAT-worker-sender");
+        private final Thread receiver = new Thread(this::receive, "NEAT-worker-receiver");
+        private boolean dead = false;
+
+        WorkerConnection(Socket socket) throws IOException {
+            this.socket = socket;
+            socket.setTcpNoDelay(true);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        void start() {
+            sender.setDaemon(true);
+            receiver.setDaemon(true);
+            sender.start();
+            receiver.start();
+        }
+
+        private void send() {
+            try {
+                while (true) {
+                    inFlightLimit.acquire();
+                    Batch batch = pending.take();
+                    if (batch.isCompleted()) {
+                        // a copy of a batch another worker has already answered
+                        inFlightLimit.release();
+                        continue;
+                    }
+                    synchronized (this) {
+                        if (dead) {
+                            pending.addFirst(batch);
+                            return;
+                        }
+                        inFlight.put(batch.id, batch);
+                        deadlines.put(batch.id, System.currentTimeMillis() + NEATConfig.WORKER_BATCH_TIMEOUT_MILLIS);
+                    }
+                    out.write(batch.request);
+                    out.flush();
+                }
+            } catch (IOException | InterruptedException e) {
+                fail();
+            }
+        }
+
+        private void receive() {
+            try {
+                while (true) {
+                    int batchId = in.readInt();
+                    double[] fitness = new double[in.readInt()];
+                    for (int i = 0; i < fitness.length; i++) {
+                        fitness[i] = in.readDouble();
+                    }
+
+                    Batch batch;
+                    synchronized (this) {
+                        batch = inFlight.remove(batchId);
+                        deadlines.remove(batchId);
+                    }
+                    if (batch != null) {
+                        batch.complete(fitness);
+                    }
+                    inFlightLimit.release();
+                }
+            } catch (IOException e) {
+                fail();
+            }
+        }
+
+        /**
+         * hand the batches which are past their deadline to the other workers as well, each only once,
+         * this worker keeps them in flight so a late answer still frees its slot
+         *
+         * @param now the current time in milliseconds
+         */
+        synchronized void requeueExpired(long now) {
+            if (dead) {
+                return;
+            }
+            deadlines.entrySet().removeIf(entry -> {
+                if (now - entry.getValue() < 0) {
+                    return false;
+                }
+                Batch batch = inFlight.get(entry.getKey());
+                if (batch != null && !batch.isCompleted()) {
+                    pending.addFirst(batch);
+                }
+                return true;
+            });
+        }
+
+        /**
+         * drop the worker and hand its unfinished batches back to the others
+         */
+        void fail() {
+            synchronized (this) {
+                if (dead) {
+                    return;
+                }
+                dead = true;
+                for (Batch batch : inFlight.values()) {
+                    if (!batch.isCompleted()) {
+                        pending.addFirst(batch);
+                    }
+                }
+                inFlight.clear();
+                deadlines.clear();
+            }
+            workers.remove(this);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // already closed
+            }
+            sender.interrupt();
+        }
+    }
+}
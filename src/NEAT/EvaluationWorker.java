@@ -0,0 +1,80 @@
+package NEAT;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+
+/**
+ * worker process for distributed fitness evaluation, see DistributedEnvironment
+ * connects to the coordinator, assigns fitness to the batches of genomes it is sent with its own
+ * environment and sends the fitness back, until the coordinator closes the connection
+ *
+ * the worker must run with the same NEATConfig as the coordinator
+ */
+public class EvaluationWorker {
+    private final Environment environment;
+
+    public EvaluationWorker(Environment environment) {
+        this.environment = environment;
+    }
+
+    /**
+     * connect to the coordinator and evaluate batches until it closes the connection
+     *
+     * @param host host of the coordinator
+     * @param port port of the coordinator
+     * @throws IOException if the connection fails
+     */
+    public void run(String host, int port) throws IOException {
+        try (Socket socket = new Socket(host, port)) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            while (true) {
+                int batchId;
+                try {
+                    batchId = in.readInt();
+                } catch (EOFException e) {
+                    // the coordinator has finished
+                    return;
+                }
+
+                int count = in.readInt();
+                ArrayList<Genome> genomes = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    genomes.add(Genome.readFrom(in));
+                }
+
+                GenePool.assignFitness(environment, genomes);
+
+                out.writeInt(batchId);
+                out.writeInt(count);
+                for (Genome genome : genomes) {
+                    out.writeDouble(genome.getFitness());
+                }
+                out.flush();
+            }
+        }
+    }
+
+    /**
+     * main method for a worker process
+     *
+     * @param args host and port of the coordinator and the class name of the environment
+     * @throws Exception if the environment can not be created or the connection fails
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 3) {
+            System.err.println("usage: EvaluationWorker <host> <port> <environment class>");
+            System.exit(1);
+        }
+        Environment environment = (Environment) Class.forName(args[2]).getDeclaredConstructor().newInstance();
+        new EvaluationWorker(environment).run(args[0], Integer.parseInt(args[1]));
+    }
+}
@@ -0,0 +1,179 @@
+package NEAT;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * off heap storage for the genes of a gene pool, see NEATConfig.OFF_HEAP_GENES
+ * at the end of each generation the gene pool packs the genes of all its genomes into one of two direct
+ * buffers, taking turns, so a packed genome is a handle holding a stamp, an offset and a count and the
+ * heap only holds the genes of children while they are bred and mutated
+ *
+ * packed genes are read in place through a GeneView and never changed, a genome decodes them back onto
+ * the heap before mutating them
+ * packing a generation reuses the buffer of the generation before the last, so a genome can be read for
+ * two generations after it was last packed, copy genomes which are kept longer
+ *
+ * each gene takes GENE_BYTES bytes: int into node, int out node, int innovation, int enabled, double weight
+ */
+class GeneArena {
+    static final int GENE_BYTES = 24;
+    private static final int INITIAL_CAPACITY = 1 << 16;
+
+    private final ByteBuffer[] buffers = {allocate(INITIAL_CAPACITY), allocate(INITIAL_CAPACITY)};
+    private int stamp = -1;
+    private int end;
+
+    private static ByteBuffer allocate(int capacity) {
+        return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * start packing a new generation, into the buffer of the generation before the last
+     */
+    void startPacking() {
+        stamp++;
+        end = 0;
+    }
+
+    /**
+     * @return the stamp of the generation being packed
+     */
+    int getStamp() {
+        return stamp;
+    }
+
+    /**
+     * pack genes into the buffer of the generation being packed
+     *
+     * @param genes the genes
+     * @return the offset of the first gene
+     */
+    int pack(GeneView genes) {
+        int offset = reserve(genes.size());
+        ByteBuffer target = buffers[stamp & 1];
+        int position = offset;
+        for (int gene = 0; gene < genes.size(); gene++) {
+            target.putInt(position, genes.getIntoNode(gene));
+            target.putInt(position + 4, genes.getOutNode(gene));
+            target.putInt(position + 8, genes.getInnovation(gene));
+            target.putInt(position + 12, genes.isEnabled(gene) ? 1 : 0);
+            target.putDouble(position + 16, genes.getWeight(gene));
+            position += GENE_BYTES;
+        }
+        return offset;
+    }
+
+    /**
+     * copy genes packed for the previous generation into the generation being packed, as bytes
+     *
+     * @param sourceStamp the stamp the genes were packed with
+     * @param offset the offset of the first gene
+     * @param count the number of genes
+     * @return the offset of the first gene in the generation being packed
+     */
+    int repack(int sourceStamp, int offset, int count) {
+        if (sourceStamp != stamp - 1) {
+            throw new IllegalStateException("only genes of the previous generation can be copied as bytes");
+        }
+        int targetOffset = reserve(count);
+        ByteBuffer source = buffers[sourceStamp & 1].duplicate();
+        source.limit(offset + count * GENE_BYTES).position(offset);
+        ByteBuffer target = buffers[stamp & 1].duplicate();
+        target.position(targetOffset);
+        target.put(source);
+        return targetOffset;
+    }
+
+    /**
+     * read packed genes in place
+     *
+     * @param genesStamp the stamp the genes were packed with
+     * @param offset the offset of the first gene
+     * @param count the number of genes
+     * @return the view
+     */
+    GeneView view(int genesStamp, int offset, int count) {
+        if (genesStamp < stamp - 1) {
+            throw new IllegalStateException("the genes were released two generations after they were packed, "
+                    + "copy genomes which are kept longer");
+        }
+        return new PackedGenes(buffers[genesStamp & 1], offset, count);
+    }
+
+    /**
+     * make room for genes at the end of the generation being packed, growing its buffer if needed
+     *
+     * @param count the number of genes
+     * @return the offset of the first gene
+     */
+    private int reserve(int count) {
+        int offset = end;
+        long required = offset + (long) count * GENE_BYTES;
+        ByteBuffer buffer = buffers[stamp & 1];
+        if (required > buffer.capacity()) {
+            if (required > Integer.MAX_VALUE) {
+                throw new IllegalStateException("too many genes for the gene arena");
+            }
+            ByteBuffer grown = allocate((int) Math.min(Integer.MAX_VALUE, Math.max(required, 2L * buffer.capacity())));
+            ByteBuffer packed = buffer.duplicate();
+            packed.limit(offset).position(0);
+            grown.put(packed);
+            buffers[stamp & 1] = grown;
+        }
+        end = (int) required;
+        return offset;
+    }
+
+    /**
+     * genes read from a buffer
+     */
+    private static class PackedGenes implements GeneView {
+        private final ByteBuffer buffer;
+        private final int offset;
+        private final int count;
+
+        PackedGenes(ByteBuffer buffer, int offset, int count) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.count = count;
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+
+        @Override
+        public int getIntoNode(int gene) {
+            return buffer.getInt(position(gene));
+        }
+
+        @Override
+        public int getOutNode(int gene) {
+            return buffer.getInt(position(gene) + 4);
+        }
+
+        @Override
+        public int getInnovation(int gene) {
+            return buffer.getInt(position(gene) + 8);
+        }
+
+        @Override
+        public boolean isEnabled(int gene) {
+            return buffer.getInt(position(gene) + 12) != 0;
+        }
+
+        @Override
+        public double getWeight(int gene) {
+            return buffer.getDouble(position(gene) + 16);
+        }
+
+        private int position(int gene) {
+            if (gene < 0 || gene >= count) {
+                throw new IndexOutOfBoundsException("gene " + gene + " of " + count);
+            }
+            return offset + gene * GENE_BYTES;
+        }
+    }
+}
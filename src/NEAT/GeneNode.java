@@ -10,6 +10,8 @@ public class GeneNode {
 
     private double value;
 
+    private ActivationFunction activation = ActivationFunction.STEEPENED_SIGMOID;
+
     private ArrayList<GeneConnection> incomingConnection = new ArrayList<>();
 
     public GeneNode(double value) {
@@ -17,6 +19,12 @@ public class GeneNode {
         this.value = value;
     }
 
+    public GeneNode(double value, ActivationFunction activation) {
+        super();
+        this.value = value;
+        this.activation = activation;
+    }
+
     public double getValue() {
         return value;
     }
@@ -25,6 +33,14 @@ public class GeneNode {
         this.value = value;
     }
 
+    public ActivationFunction getActivation() {
+        return activation;
+    }
+
+    public void setActivation(ActivationFunction activation) {
+        this.activation = activation;
+    }
+
     public ArrayList<GeneConnection> getIncomingConnection() {
         return incomingConnection;
     }
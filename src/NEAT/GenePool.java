@@ -4,6 +4,7 @@ import NEAT.config.NEATConfig;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 
 /**
  * class which defines properties and functions of the gene pool
@@ -13,16 +14,63 @@ public class GenePool {
     private int generations = 0;
     private double bestFitness;
     private int poolStaleness = 0;
+    private float compatibilityThreshold;
+    private Genome champion;
+    private GenealogyLog genealogyLog;
+    private InnovationRegistry innovationRegistry;
+    private final PoolParameters parameters;
+    private final GeneArena arena = NEATConfig.OFF_HEAP_GENES ? new GeneArena() : null;
+
+    /**
+     * create a gene pool with the parameters from NEATConfig
+     */
+    public GenePool() {
+        this(new PoolParameters());
+    }
+
+    /**
+     * create a gene pool with its own parameters, so pools in the same JVM can differ
+     *
+     * @param parameters the parameters, copied
+     */
+    public GenePool(PoolParameters parameters) {
+        this.parameters = new PoolParameters(parameters);
+        this.compatibilityThreshold = parameters.getCompatibilityThreshold();
+    }
 
     /**
      * create a new gene pool with new genomes
      */
     public void initializePool() {
-        for (int i = 0; i < NEATConfig.POPULATION; i++) {
-            addToSpecies(new Genome());
+        for (int i = 0; i < parameters.getPopulation(); i++) {
+            Genome genome = new Genome(parameters);
+            if (genealogyLog != null) {
+                genealogyLog.logBirth(genome, null, generations);
+            }
+            addToSpecies(genome);
         }
     }
 
+    /**
+     * record births, species assignments and fitness from now on, set it before initializePool so the
+     * initial genomes are recorded too, genomes added from outside the pool are not recorded
+     *
+     * @param genealogyLog the log, or null to stop recording
+     */
+    public void setGenealogyLog(GenealogyLog genealogyLog) {
+        this.genealogyLog = genealogyLog;
+    }
+
+    /**
+     * number new connections and nodes through a registry shared with other gene pools, so the same
+     * structural mutation gets the same numbers in all of them
+     *
+     * @param innovationRegistry the registry, or null to give every structural mutation new numbers
+     */
+    public void setInnovationRegistry(InnovationRegistry innovationRegistry) {
+        this.innovationRegistry = innovationRegistry;
+    }
+
     /**
      * identify which species a genome belongs to and add to it
      * will create a new species if no matching one can be found
@@ -36,8 +84,11 @@ public class GenePool {
                 continue;
             }
             Genome genome0 = singleSpecies.getGenomes().get(0);
-            if (Genome.isSameSpecies(genome, genome0)) {
+            if (Genome.isSameSpecies(genome, genome0, compatibilityThreshold)) {
                 singleSpecies.getGenomes().add(genome);
+                if (genealogyLog != null) {
+                    genealogyLog.logSpecies(genome, genome0, generations);
+                }
                 return;
             }
         }
@@ -45,24 +96,106 @@ public class GenePool {
         Species childSpecies = new Species();
         childSpecies.getGenomes().add(genome);
         species.add(childSpecies);
+        if (genealogyLog != null) {
+            genealogyLog.logSpecies(genome, genome, generations);
+        }
     }
 
     /**
      * evaluate the fitness of all genomes
+     * batch environments are given the genomes grouped by topology if NEATConfig.GROUP_BY_TOPOLOGY is set
+     * racing environments are given each species on its own since genomes only compete within their species
+     * mini batch environments periodically have the best genomes revalidated on every sample
      *
      * @param environment the environment the genomes live in
      */
     public void evaluateFitness(Environment environment){
+        if (environment instanceof RacingEnvironment) {
+            for (Species singleSpecies : species) {
+                environment.evaluateFitness(singleSpecies.getGenomes());
+                applyComplexityCost(singleSpecies.getGenomes());
+            }
+            rankGlobally();
+            return;
+        }
+
         ArrayList<Genome> allGenome = new ArrayList<>();
         for(Species singleSpecies: species){
             for(Genome genome: singleSpecies.getGenomes()){
                 allGenome.add(genome);
             }
         }
-        environment.evaluateFitness(allGenome);
+        assignFitness(environment, allGenome);
+        applyComplexityCost(allGenome);
+        if (environment instanceof MiniBatchEnvironment && ((MiniBatchEnvironment) environment).isRevalidationDue()) {
+            revalidateChampions((MiniBatchEnvironment) environment, allGenome);
+        }
         rankGlobally();
     }
 
+    /**
+     * charge each genome NEATConfig.COMPLEXITY_COST per enabled connection left in its network after
+     * pruning, an estimate of its inference cost, so cheaper networks are preferred
+     *
+     * @param population the genomes
+     */
+    private void applyComplexityCost(ArrayList<Genome> population) {
+        if (NEATConfig.COMPLEXITY_COST == 0) {
+            return;
+        }
+        for (Genome genome : population) {
+            genome.setFitness(genome.getFitness() - complexityCost(genome));
+        }
+    }
+
+    /**
+     * @param genome the genome
+     * @return the fitness NEATConfig.COMPLEXITY_COST takes off the genome
+     */
+    private static double complexityCost(Genome genome) {
+        if (NEATConfig.COMPLEXITY_COST == 0) {
+            return 0;
+        }
+        return NEATConfig.COMPLEXITY_COST * genome.getNetwork().getConnectionCount();
+    }
+
+    /**
+     * replace the mini batch fitness of the best genomes with their fitness over every sample and keep
+     * a copy of the best revalidated genome as the champion, the complexity cost is charged to both
+     *
+     * @param environment the mini batch environment
+     * @param population the genomes, with their mini batch fitness
+     */
+    private void revalidateChampions(MiniBatchEnvironment environment, ArrayList<Genome> population) {
+        ArrayList<Genome> sorted = new ArrayList<>(population);
+        Collections.sort(sorted, Collections.reverseOrder());
+
+        for (Genome genome : sorted.subList(0, Math.min(NEATConfig.REVALIDATED_CHAMPIONS, sorted.size()))) {
+            genome.setFitness(environment.validate(genome) - complexityCost(genome));
+            if (champion == null || genome.getFitness() > champion.getPoints()) {
+                champion = new Genome(genome);
+                champion.setPoints(genome.getFitness());
+            }
+        }
+    }
+
+    /**
+     * let the environment assign fitness to the genomes, grouped by topology for batch environments
+     * if NEATConfig.GROUP_BY_TOPOLOGY is set
+     *
+     * @param environment the environment the genomes live in
+     * @param population the genomes
+     */
+    static void assignFitness(Environment environment, ArrayList<Genome> population) {
+        if (NEATConfig.GROUP_BY_TOPOLOGY && environment instanceof BatchEnvironment) {
+            for (GenomeBatch batch : GenomeBatch.groupByTopology(population)) {
+                ((BatchEnvironment) environment).evaluateFitness(batch);
+            }
+        } else {
+            environment.evaluateFitness(population);
+        }
+    }
+
     /**
      * sorts genomes by fitness and assigns points
      */
@@ -84,13 +217,24 @@ public class GenePool {
             allGenome.get(i).setPoints(allGenome.get(i).getFitness());
             allGenome.get(i).setFitness(i);
         }
+
+        if (genealogyLog != null) {
+            for (Genome genome : allGenome) {
+                genealogyLog.logFitness(genome, genome.getPoints(), generations);
+            }
+        }
     }
 
     /**
      * get the best genome amongst all species
+     * when evaluating with a MiniBatchEnvironment this is the best genome revalidated on every sample so far
      * @return
      */
     public Genome getTopGenome(){
+        if (champion != null) {
+            return champion;
+        }
+
         ArrayList<Genome> allGenome = new ArrayList<>();
 
         // get all existing genomes
@@ -107,6 +251,28 @@ public class GenePool {
         return allGenome.get(0);
     }
 
+    /**
+     * get the best genomes amongst all species
+     *
+     * @param count the number of genomes
+     * @return up to count genomes, best first
+     */
+    public ArrayList<Genome> getTopGenomes(int count) {
+        ArrayList<Genome> allGenome = new ArrayList<>();
+
+        // get all existing genomes
+        for(Species singleSpecies: species){
+            for(Genome genome: singleSpecies.getGenomes()){
+                allGenome.add(genome);
+            }
+        }
+
+        // sort existing genomes by fitness
+        Collections.sort(allGenome,Collections.reverseOrder());
+
+        return new ArrayList<>(allGenome.subList(0, Math.min(count, allGenome.size())));
+    }
+
     /**
      * get the total normalised fitness for all species
      *
@@ -127,7 +293,7 @@ public class GenePool {
     }
 
     /**
-     * kill off weak 50% of genomes across all species
+     * kill off weak genomes across all species
      */
     public void killWeakGenomesFromSpecies() {
         for(Species singleSpecies: species){
@@ -194,9 +360,19 @@ public class GenePool {
         killWeakGenomesFromSpecies();
         removeStaleSpecies();
 
+        // parents by id, to log each birth relative to its first parent
+        HashMap<Long, Genome> parents = new HashMap<>();
+        if (genealogyLog != null) {
+            for (Species singleSpecies : species) {
+                for (Genome genome : singleSpecies.getGenomes()) {
+                    parents.put(genome.getId(), genome);
+                }
+            }
+        }
+
         for (Species singleSpecies : species) {
             // find how many children the new generation will have for this species
-            double newChildren = NEATConfig.POPULATION * (singleSpecies.getTotalNormalisedFitness() / globalNormalisedFitness) ;
+            double newChildren = parameters.getPopulation() * (singleSpecies.getTotalNormalisedFitness() / globalNormalisedFitness) ;
             int newChildrenInteger = (int) newChildren;
             carryOver += newChildren - newChildrenInteger;
 
@@ -210,11 +386,19 @@ public class GenePool {
             }
 
             // add the strongest genome to the new generation
-            survived.add(new Species(singleSpecies.getBestGenome()));
+            Genome survivor = singleSpecies.getBestGenome();
+            survived.add(new Species(survivor));
+            if (genealogyLog != null) {
+                // the survivor represents its species in the next generation
+                genealogyLog.logSpecies(survivor, survivor, generations + 1);
+            }
 
             // make new child genomes and add to species
             for (int i = 1; i < newChildrenInteger; i++) {
-                Genome child = singleSpecies.breedChild();
+                Genome child = singleSpecies.breedChild(innovationRegistry);
+                if (genealogyLog != null) {
+                    genealogyLog.logBirth(child, parents.get(child.getParent1Id()), generations + 1);
+                }
                 children.add(child);
             }
         }
@@ -224,11 +408,43 @@ public class GenePool {
         for (Genome child: children) {
             addToSpecies(child);
         }
+        adjustCompatibilityThreshold();
+
+        // move the genes of the new generation off heap, reusing the buffer of the generation before the last
+        if (arena != null) {
+            arena.startPacking();
+            for (Species singleSpecies : species) {
+                for (Genome genome : singleSpecies.getGenomes()) {
+                    genome.packInto(arena);
+                }
+            }
+        }
 
         generations++;
         return children;
     }
 
+    /**
+     * move the compatibility threshold towards NEATConfig.TARGET_SPECIES species for the next generation,
+     * raising it merges species and lowering it splits them
+     * genomes without any matching genes are never the same species, so the threshold is capped rather
+     * than raised forever when those alone keep the count up
+     */
+    private void adjustCompatibilityThreshold() {
+        if (NEATConfig.TARGET_SPECIES <= 0) {
+            return;
+        }
+        if (species.size() > NEATConfig.TARGET_SPECIES) {
+            compatibilityThreshold = Math.min(NEATConfig.MAX_COMPATIBILITY_THRESHOLD, compatibilityThreshold + NEATConfig.COMPATIBILITY_ADJUSTMENT);
+        } else if (species.size() < NEATConfig.TARGET_SPECIES) {
+            compatibilityThreshold = Math.max(NEATConfig.COMPATIBILITY_ADJUSTMENT, compatibilityThreshold - NEATConfig.COMPATIBILITY_ADJUSTMENT);
+        }
+    }
+
+    public float getCompatibilityThreshold() {
+        return compatibilityThreshold;
+    }
+
     /**
      * find the highest values of fitness across all genomes
      *
@@ -0,0 +1,83 @@
+package NEAT;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * read access to the connection genes of a genome by index, whether they are held as GeneConnection
+ * objects or packed in a GeneArena, so network building, speciation and crossover read packed genes
+ * where they are
+ */
+interface GeneView {
+
+    int size();
+
+    int getIntoNode(int gene);
+
+    int getOutNode(int gene);
+
+    int getInnovation(int gene);
+
+    double getWeight(int gene);
+
+    boolean isEnabled(int gene);
+
+    /**
+     * @param gene the index of the gene
+     * @return a new gene object with the values of the gene
+     */
+    default GeneConnection copy(int gene) {
+        return new GeneConnection(getIntoNode(gene), getOutNode(gene), getInnovation(gene), getWeight(gene), isEnabled(gene));
+    }
+
+    /**
+     * @return new gene objects with the values of all the genes
+     */
+    default ArrayList<GeneConnection> copyAll() {
+        ArrayList<GeneConnection> genes = new ArrayList<>(size());
+        for (int gene = 0; gene < size(); gene++) {
+            genes.add(copy(gene));
+        }
+        return genes;
+    }
+
+    /**
+     * view gene objects
+     *
+     * @param connections the genes
+     * @return the view, reading the list as it is at the time of each call
+     */
+    static GeneView of(List<GeneConnection> connections) {
+        return new GeneView() {
+            @Override
+            public int size() {
+                return connections.size();
+            }
+
+            @Override
+            public int getIntoNode(int gene) {
+                return connections.get(gene).getIntoNode();
+            }
+
+            @Override
+            public int getOutNode(int gene) {
+                return connections.get(gene).getOutNode();
+            }
+
+            @Override
+            public int getInnovation(int gene) {
+                return connections.get(gene).getInnovation();
+            }
+
+            @Override
+            public double getWeight(int gene) {
+                return connections.get(gene).getWeight();
+            }
+
+            @Override
+            public boolean isEnabled(int gene) {
+                return connections.get(gene).isEnabled();
+            }
+        };
+    }
+}
@@ -0,0 +1,356 @@
+package NEAT;
+
+import NEAT.config.NEATConfig;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * event log of the genealogy of a gene pool: births, mutations, species assignments and fitness
+ * a birth only records how the child differs from its first parent, so any genome can be rebuilt by
+ * replaying the births along its line of first parents, see GenealogyReader
+ *
+ * records are encoded on the calling thread and handed to a background thread through a bounded queue,
+ * which writes them to the file in batches, so breeding only waits on the disk when the queue is full
+ *
+ * file format: int magic, int version, then records of a type byte followed by varints, zigzag varints
+ * for signed values and 8 byte doubles, ending with an END record
+ * BIRTH: id, generation, parent1 id + 1, parent2 id + 1, mutation bits, changed gene count, each changed
+ * gene as innovation delta, into node, out node, weight, enabled byte, removed gene count, each removed
+ * innovation delta, changed activation count, each as node and activation ordinal, removed activation
+ * count, each removed node
+ * SPECIES: id, generation, id of the genome representing the species
+ * FITNESS: id, generation, fitness
+ */
+public class GenealogyLog implements AutoCloseable {
+    static final int MAGIC = 0x4E45474C;
+    static final int VERSION = 1;
+    static final byte END = 0;
+    static final byte BIRTH = 1;
+    static final byte SPECIES = 2;
+    static final byte FITNESS = 3;
+
+    private static final int BATCH_BYTES = 1 << 16;
+    private static final long QUEUE_POLL_MILLIS = 100;
+    private static final byte[] END_RECORD = {END};
+
+    private final FileChannel channel;
+    private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(NEATConfig.GENEALOGY_QUEUE_SIZE);
+    private final Thread writer;
+    private volatile IOException failure;
+    private boolean closed;
+
+    /**
+     * create the log file and start the writer thread
+     *
+     * @param path the log file, replaced if it exists
+     * @throws IOException if the file can not be created
+     */
+    public GenealogyLog(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(2 * Integer.BYTES).putInt(MAGIC).putInt(VERSION);
+        header.flip();
+        try {
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        writer = new Thread(this::write, "genealogy-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * record the birth of a genome
+     *
+     * @param genome the new genome
+     * @param parent1 the parent with id genome.getParent1Id, or null for an initial genome
+     * @param generation the generation the genome was born into
+     */
+    public void logBirth(Genome genome, Genome parent1, int generation) {
+        Encoder encoder = new Encoder();
+        encoder.writeByte(BIRTH);
+        encoder.writeVarLong(genome.getId());
+        encoder.writeVarLong(generation);
+        encoder.writeVarLong(genome.getParent1Id() + 1);
+        encoder.writeVarLong(genome.getParent2Id() + 1);
+        encoder.writeVarLong(genome.getMutations());
+
+        TreeMap<Integer, GeneConnection> genes = byInnovation(genome.getGenes());
+        TreeMap<Integer, GeneConnection> parentGenes = parent1 == null ? new TreeMap<>() : byInnovation(parent1.getGenes());
+
+        // genes which are new or differ from the parent
+        ArrayList<GeneConnection> changed = new ArrayList<>();
+        for (GeneConnection gene : genes.values()) {
+            GeneConnection parentGene = parentGenes.get(gene.getInnovation());
+            if (parentGene == null || !sameGene(gene, parentGene)) {
+                changed.add(gene);
+            }
+        }
+        encoder.writeVarLong(changed.size());
+        int innovation = 0;
+        for (GeneConnection gene : changed) {
+            encoder.writeVarLong(gene.getInnovation() - innovation);
+            innovation = gene.getInnovation();
+            encoder.writeZigZag(gene.getIntoNode());
+            encoder.writeZigZag(gene.getOutNode());
+            encoder.writeDouble(gene.getWeight());
+            encoder.writeByte(gene.isEnabled() ? 1 : 0);
+        }
+
+        // genes of the parent the child did not inherit
+        ArrayList<Integer> removed = new ArrayList<>();
+        for (Integer parentInnovation : parentGenes.keySet()) {
+            if (!genes.containsKey(parentInnovation)) {
+                removed.add(parentInnovation);
+            }
+        }
+        encoder.writeVarLong(removed.size());
+        innovation = 0;
+        for (int removedInnovation : removed) {
+            encoder.writeVarLong(removedInnovation - innovation);
+            innovation = removedInnovation;
+        }
+
+        Map<Integer, ActivationFunction> activations = genome.getNodeActivations();
+        Map<Integer, ActivationFunction> parentActivations = parent1 == null ? Map.of() : parent1.getNodeActivations();
+        int changedActivations = 0;
+        for (Map.Entry<Integer, ActivationFunction> entry : activations.entrySet()) {
+            if (parentActivations.get(entry.getKey()) != entry.getValue()) {
+                changedActivations++;
+            }
+        }
+        encoder.writeVarLong(changedActivations);
+        for (Map.Entry<Integer, ActivationFunction> entry : activations.entrySet()) {
+            if (parentActivations.get(entry.getKey()) != entry.getValue()) {
+                encoder.writeZigZag(entry.getKey());
+                encoder.writeByte(entry.getValue().ordinal());
+            }
+        }
+        int removedActivations = 0;
+        for (Integer node : parentActivations.keySet()) {
+            if (!activations.containsKey(node)) {
+                removedActivations++;
+            }
+        }
+        encoder.writeVarLong(removedActivations);
+        for (Integer node : parentActivations.keySet()) {
+            if (!activations.containsKey(node)) {
+                encoder.writeZigZag(node);
+            }
+        }
+        enqueue(encoder.toByteArray());
+    }
+
+    /**
+     * record the species a genome was assigned to
+     *
+     * @param genome the genome
+     * @param representative the first genome of the species, the genome itself when it starts a species
+     * @param generation the current generation
+     */
+    public void logSpecies(Genome genome, Genome representative, int generation) {
+        Encoder encoder = new Encoder();
+        encoder.writeByte(SPECIES);
+        encoder.writeVarLong(genome.getId());
+        encoder.writeVarLong(generation);
+        encoder.writeVarLong(representative.getId());
+        enqueue(encoder.toByteArray());
+    }
+
+    /**
+     * record the fitness a genome was evaluated to
+     *
+     * @param genome the genome
+     * @param fitness the raw fitness
+     * @param generation the current generation
+     */
+    public void logFitness(Genome genome, double fitness, int generation) {
+        Encoder encoder = new Encoder();
+        encoder.writeByte(FITNESS);
+        encoder.writeVarLong(genome.getId());
+        encoder.writeVarLong(generation);
+        encoder.writeDouble(fitness);
+        enqueue(encoder.toByteArray());
+    }
+
+    /**
+     * write the remaining records, end the log and close the file
+     *
+     * @throws IOException if any record could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (failure == null && !offer(END_RECORD)) {
+                // the writer stopped without failing, nothing is left to end the log
+                writer.interrupt();
+            }
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writer.interrupt();
+        } finally {
+            channel.close();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * queue a record, waiting while the queue is full but giving up once the writer has stopped, so a
+     * writer failing while the caller waits can not block it forever
+     *
+     * @param record the encoded record
+     * @return boolean indicating if the record was queued
+     */
+    private boolean offer(byte[] record) throws InterruptedException {
+        while (!queue.offer(record, QUEUE_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (!writer.isAlive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void enqueue(byte[] record) {
+        if (closed) {
+            throw new IllegalStateException("genealogy log is closed");
+        }
+        if (failure != null) {
+            throw new IllegalStateException("genealogy log failed to write", failure);
+        }
+        try {
+            if (!offer(record)) {
+                throw new IllegalStateException("genealogy log failed to write", failure);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while logging genealogy", e);
+        }
+    }
+
+    /**
+     * body of the writer thread, drains the queue in batches until the end record
+     */
+    private void write() {
+        ByteBuffer batch = ByteBuffer.allocateDirect(BATCH_BYTES);
+        ArrayList<byte[]> records = new ArrayList<>();
+        try {
+            while (true) {
+                records.add(queue.take());
+                queue.drainTo(records);
+                boolean end = false;
+                for (byte[] record : records) {
+                    if (record.length > batch.remaining()) {
+                        flush(batch);
+                    }
+                    if (record.length > batch.capacity()) {
+                        flush(ByteBuffer.wrap(record));
+                    } else {
+                        batch.put(record);
+                    }
+                    end = record == END_RECORD;
+                }
+                records.clear();
+                flush(batch);
+                if (end) {
+                    channel.force(false);
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            failure = e;
+            // keep callers from blocking on a queue nobody drains
+            queue.clear();
+        } catch (InterruptedException e) {
+            // closed after a failure
+        }
+    }
+
+    private void flush(ByteBuffer buffer) throws IOException {
+        if (buffer.isDirect()) {
+            buffer.flip();
+        }
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static TreeMap<Integer, GeneConnection> byInnovation(ArrayList<GeneConnection> genes) {
+        TreeMap<Integer, GeneConnection> map = new TreeMap<>();
+        for (GeneConnection gene : genes) {
+            map.put(gene.getInnovation(), gene);
+        }
+        return map;
+    }
+
+    private static boolean sameGene(GeneConnection a, GeneConnection b) {
+        return a.getIntoNode() == b.getIntoNode() && a.getOutNode() == b.getOutNode()
+                && Double.doubleToLongBits(a.getWeight()) == Double.doubleToLongBits(b.getWeight())
+                && a.isEnabled() == b.isEnabled();
+    }
+
+    /**
+     * growable byte array for encoding a single record
+     */
+    private static class Encoder {
+        private byte[] bytes = new byte[64];
+        private int size;
+
+        void writeByte(int value) {
+            ensure(1);
+            bytes[size++] = (byte) value;
+        }
+
+        void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        void writeZigZag(long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        void writeDouble(double value) {
+            ensure(Double.BYTES);
+            long bits = Double.doubleToRawLongBits(value);
+            for (int i = 0; i < Double.BYTES; i++) {
+                bytes[size++] = (byte) (bits >>> (56 - 8 * i));
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+
+        private void ensure(int count) {
+            if (size + count > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + count));
+            }
+        }
+    }
+}
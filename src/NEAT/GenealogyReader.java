@@ -0,0 +1,234 @@
+package NEAT;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * reads a log written by GenealogyLog and rebuilds genomes from it
+ * a log which was not closed is read up to its last complete record
+ */
+public class GenealogyReader {
+    private final HashMap<Long, Birth> births = new HashMap<>();
+    private final HashMap<Long, Long> species = new HashMap<>();
+    private final HashMap<Long, Double> fitness = new HashMap<>();
+
+    /**
+     * a single birth record
+     */
+    private static class Birth {
+        long parent1Id;
+        long parent2Id;
+        int generation;
+        int mutations;
+        ArrayList<GeneConnection> changedGenes = new ArrayList<>();
+        ArrayList<Integer> removedGenes = new ArrayList<>();
+        HashMap<Integer, ActivationFunction> changedActivations = new HashMap<>();
+        ArrayList<Integer> removedActivations = new ArrayList<>();
+    }
+
+    /**
+     * read a whole log
+     *
+     * @param path the log file
+     * @throws IOException if the file can not be read or is not a genealogy log
+     */
+    public GenealogyReader(Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        if (buffer.remaining() < 2 * Integer.BYTES || buffer.getInt() != GenealogyLog.MAGIC) {
+            throw new IOException("not a genealogy log: " + path);
+        }
+        int version = buffer.getInt();
+        if (version != GenealogyLog.VERSION) {
+            throw new IOException("unsupported genealogy log version " + version + ": " + path);
+        }
+
+        while (buffer.hasRemaining()) {
+            try {
+                if (!readRecord(buffer)) {
+                    return;
+                }
+            } catch (RuntimeException e) {
+                // a record cut short by a crash, keep what was read before it
+                return;
+            }
+        }
+    }
+
+    private boolean readRecord(ByteBuffer buffer) {
+        byte type = buffer.get();
+        switch (type) {
+            case GenealogyLog.END:
+                return false;
+            case GenealogyLog.BIRTH: {
+                long id = readVarLong(buffer);
+                Birth birth = new Birth();
+                birth.generation = (int) readVarLong(buffer);
+                birth.parent1Id = readVarLong(buffer) - 1;
+                birth.parent2Id = readVarLong(buffer) - 1;
+                birth.mutations = (int) readVarLong(buffer);
+                int innovation = 0;
+                for (long i = readVarLong(buffer); i > 0; i--) {
+                    innovation += (int) readVarLong(buffer);
+                    int into = (int) readZigZag(buffer);
+                    int out = (int) readZigZag(buffer);
+                    double weight = buffer.getDouble();
+                    boolean enabled = buffer.get() != 0;
+                    birth.changedGenes.add(new GeneConnection(into, out, innovation, weight, enabled));
+                }
+                innovation = 0;
+                for (long i = readVarLong(buffer); i > 0; i--) {
+                    innovation += (int) readVarLong(buffer);
+                    birth.removedGenes.add(innovation);
+                }
+                for (long i = readVarLong(buffer); i > 0; i--) {
+                    int node = (int) readZigZag(buffer);
+                    birth.changedActivations.put(node, ActivationFunction.values()[buffer.get()]);
+                }
+                for (long i = readVarLong(buffer); i > 0; i--) {
+                    birth.removedActivations.add((int) readZigZag(buffer));
+                }
+                births.put(id, birth);
+                return true;
+            }
+            case GenealogyLog.SPECIES: {
+                long id = readVarLong(buffer);
+                readVarLong(buffer);
+                species.put(id, readVarLong(buffer));
+                return true;
+            }
+            case GenealogyLog.FITNESS: {
+                long id = readVarLong(buffer);
+                readVarLong(buffer);
+                fitness.put(id, buffer.getDouble());
+                return true;
+            }
+            default:
+                throw new IllegalStateException("unknown genealogy record type " + type);
+        }
+    }
+
+    /**
+     * rebuild a genome by replaying the births along its line of first parents
+     *
+     * @param id id of the genome
+     * @return a new genome with the genes and activations the genome was born with
+     */
+    public Genome reconstruct(long id) {
+        ArrayList<Birth> line = new ArrayList<>();
+        for (long ancestor = id; ancestor != -1; ancestor = line.get(line.size() - 1).parent1Id) {
+            line.add(getBirth(ancestor));
+        }
+        Collections.reverse(line);
+
+        TreeMap<Integer, GeneConnection> genes = new TreeMap<>();
+        HashMap<Integer, ActivationFunction> activations = new HashMap<>();
+        for (Birth birth : line) {
+            for (GeneConnection gene : birth.changedGenes) {
+                genes.put(gene.getInnovation(), gene);
+            }
+            for (Integer innovation : birth.removedGenes) {
+                genes.remove(innovation);
+            }
+            activations.putAll(birth.changedActivations);
+            for (Integer node : birth.removedActivations) {
+                activations.remove(node);
+            }
+        }
+
+        ArrayList<GeneConnection> copies = new ArrayList<>();
+        for (GeneConnection gene : genes.values()) {
+            copies.add(new GeneConnection(gene));
+        }
+        return Genome.fromGenes(copies, activations);
+    }
+
+    /**
+     * @param id id of the genome
+     * @return the ids of the genome and its first parents back to an initial genome, newest first
+     */
+    public ArrayList<Long> getLineage(long id) {
+        ArrayList<Long> lineage = new ArrayList<>();
+        for (long ancestor = id; ancestor != -1; ancestor = getBirth(ancestor).parent1Id) {
+            lineage.add(ancestor);
+        }
+        return lineage;
+    }
+
+    public long getParent1Id(long id) {
+        return getBirth(id).parent1Id;
+    }
+
+    public long getParent2Id(long id) {
+        return getBirth(id).parent2Id;
+    }
+
+    public int getGeneration(long id) {
+        return getBirth(id).generation;
+    }
+
+    /**
+     * @param id id of the genome
+     * @return bits of the kinds of mutation applied at birth, see the Genome mutation constants
+     */
+    public int getMutations(long id) {
+        return getBirth(id).mutations;
+    }
+
+    /**
+     * @param id id of the genome
+     * @return the id of the genome representing its latest species, or -1 if none was logged
+     */
+    public long getSpecies(long id) {
+        return species.getOrDefault(id, -1L);
+    }
+
+    /**
+     * @param id id of the genome
+     * @return the latest fitness logged for the genome, or NaN if none was logged
+     */
+    public double getFitness(long id) {
+        return fitness.getOrDefault(id, Double.NaN);
+    }
+
+    /**
+     * @return the generation each genome in the log was born into, by id
+     */
+    public Map<Long, Integer> getGenerations() {
+        HashMap<Long, Integer> generations = new HashMap<>();
+        for (Map.Entry<Long, Birth> entry : births.entrySet()) {
+            generations.put(entry.getKey(), entry.getValue().generation);
+        }
+        return generations;
+    }
+
+    private Birth getBirth(long id) {
+        Birth birth = births.get(id);
+        if (birth == null) {
+            throw new IllegalArgumentException("genome " + id + " was not born in the log");
+        }
+        return birth;
+    }
+
+    private static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    private static long readZigZag(ByteBuffer buffer) {
+        long value = readVarLong(buffer);
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -2,6 +2,9 @@ package NEAT;
 
 import NEAT.config.NEATConfig;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -9,19 +12,58 @@ import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import javax.management.RuntimeErrorException;
 
 /**
  * class which defines the properties and functionality of a genome
  */
 public class Genome implements Comparable {
-    private static Random rand = new Random();
+    private static final AtomicLong idCounter = new AtomicLong();
+
+    /**
+     * bits of getMutations, one per kind of mutation applied
+     */
+    static final int WEIGHT_MUTATION = 1;
+    static final int CONNECTION_MUTATION = 2;
+    static final int BIAS_CONNECTION_MUTATION = 4;
+    static final int NODE_MUTATION = 8;
+    static final int DISABLE_MUTATION = 16;
+    static final int ENABLE_MUTATION = 32;
+
+    private long id = idCounter.incrementAndGet();
+    private long parent1Id = -1;
+    private long parent2Id = -1;
+    private int mutations;
     private double fitness;
     private double points;
     private double normalisedFitness;
+    private double[] behaviour;
     private ArrayList<GeneConnection> geneConnectionList = new ArrayList<>();
     private TreeMap<Integer, GeneNode> nodes = new TreeMap<>();
+    private HashMap<Integer, ActivationFunction> nodeActivations = new HashMap<>();
     private HashMap<MutationKeys, Float> mutationRates = new HashMap<>();
+    private Network network;
+    private final AtomicReference<NetworkState> spareState = new AtomicReference<>();
+    private int[] signature;
+    private int signatureCount;
+
+    /**
+     * while the genes are packed in a GeneArena the gene list is null and the genome is a handle to them
+     */
+    private GeneArena arena;
+    private int arenaStamp;
+    private int arenaOffset;
+    private int arenaGenes;
+
+    /**
+     * number of buckets innovations are folded into for the species signature
+     */
+    private static final int SIGNATURE_BUCKETS = 256;
+
+    private static final PoolParameters DEFAULT_PARAMETERS = new PoolParameters();
 
     /**
      * enum to identify mutation constants
@@ -39,29 +81,96 @@ public class Genome implements Comparable {
     }
 
     public Genome(){
-        this.mutationRates.put(MutationKeys.STEPS, NEATConfig.STEPS);
-        this.mutationRates.put(MutationKeys.PERTURB_CHANCE, NEATConfig.PERTURB_CHANCE);
-        this.mutationRates.put(MutationKeys.WEIGHT_CHANCE,NEATConfig.WEIGHT_CHANCE);
-        this.mutationRates.put(MutationKeys.WEIGHT_MUTATION_CHANCE, NEATConfig.WEIGHT_MUTATION_CHANCE);
-        this.mutationRates.put(MutationKeys.NODE_MUTATION_CHANCE , NEATConfig.NODE_MUTATION_CHANCE);
-        this.mutationRates.put(MutationKeys.CONNECTION_MUTATION_CHANCE , NEATConfig.CONNECTION_MUTATION_CHANCE);
-        this.mutationRates.put(MutationKeys.BIAS_CONNECTION_MUTATION_CHANCE , NEATConfig.BIAS_CONNECTION_MUTATION_CHANCE);
-        this.mutationRates.put(MutationKeys.DISABLE_MUTATION_CHANCE , NEATConfig.DISABLE_MUTATION_CHANCE);
-        this.mutationRates.put(MutationKeys.ENABLE_MUTATION_CHANCE , NEATConfig.ENABLE_MUTATION_CHANCE);
+        this(DEFAULT_PARAMETERS);
+    }
+
+    /**
+     * create an empty genome starting with the mutation rates of a gene pool
+     *
+     * @param parameters the parameters of the gene pool
+     */
+    Genome(PoolParameters parameters) {
+        this.mutationRates.put(MutationKeys.STEPS, parameters.getSteps());
+        this.mutationRates.put(MutationKeys.PERTURB_CHANCE, parameters.getPerturbChance());
+        this.mutationRates.put(MutationKeys.WEIGHT_CHANCE, parameters.getWeightChance());
+        this.mutationRates.put(MutationKeys.WEIGHT_MUTATION_CHANCE, parameters.getWeightMutationChance());
+        this.mutationRates.put(MutationKeys.NODE_MUTATION_CHANCE, parameters.getNodeMutationChance());
+        this.mutationRates.put(MutationKeys.CONNECTION_MUTATION_CHANCE, parameters.getConnectionMutationChance());
+        this.mutationRates.put(MutationKeys.BIAS_CONNECTION_MUTATION_CHANCE, parameters.getBiasConnectionMutationChance());
+        this.mutationRates.put(MutationKeys.DISABLE_MUTATION_CHANCE, parameters.getDisableMutationChance());
+        this.mutationRates.put(MutationKeys.ENABLE_MUTATION_CHANCE, parameters.getEnableMutationChance());
     }
 
     /**
-     * copy constructor
+     * random numbers for breeding and mutation, kept per thread so gene pools running on several
+     * threads do not contend on a shared generator
+     *
+     * @return the random number generator of the current thread
+     */
+    private static Random rand() {
+        return ThreadLocalRandom.current();
+    }
+
+    /**
+     * copy constructor, genes packed in a GeneArena are decoded so the copy can be kept for any time
      *
      * @param child the child genome
      */
     public Genome(Genome child) {
-        for (GeneConnection connection : child.geneConnectionList){
-            this.geneConnectionList.add(new GeneConnection(connection));
+        this(child, false);
+    }
+
+    /**
+     * copy constructor for copies used within the generation of the genome, which can share genes packed
+     * in a GeneArena since those are never changed, the copy decodes them before mutating them
+     *
+     * @param child the child genome
+     * @param shareGenes share packed genes rather than decode them
+     */
+    Genome(Genome child, boolean shareGenes) {
+        this.id = child.id;
+        this.parent1Id = child.parent1Id;
+        this.parent2Id = child.parent2Id;
+        this.mutations = child.mutations;
+        if (child.arena != null && shareGenes) {
+            this.geneConnectionList = null;
+            this.arena = child.arena;
+            this.arenaStamp = child.arenaStamp;
+            this.arenaOffset = child.arenaOffset;
+            this.arenaGenes = child.arenaGenes;
+        } else {
+            this.geneConnectionList = child.getGeneView().copyAll();
         }
         this.fitness = child.fitness;
         this.normalisedFitness = child.normalisedFitness;
+        this.behaviour = child.behaviour;
         this.mutationRates = (HashMap<MutationKeys, Float>) child.mutationRates.clone();
+        this.nodeActivations = new HashMap<>(child.nodeActivations);
+        this.signature = child.signature;
+        this.signatureCount = child.signatureCount;
+        if (child.network != null) {
+            this.network = new Network(child.network);
+        }
+    }
+
+    /**
+     * give a copy of its parents a new identity as their child, the copy constructor keeps the identity
+     * so copies of survivors stay the same genome
+     *
+     * @param parent1 a parent the genes were copied from or bred with
+     * @param parent2 the other parent when bred, or null
+     */
+    void born(Genome parent1, Genome parent2) {
+        // breed copies the genes of the fitter parent, so record it first
+        if (parent2 != null && parent1.fitness < parent2.fitness) {
+            Genome temp = parent1;
+            parent1 = parent2;
+            parent2 = temp;
+        }
+        id = idCounter.incrementAndGet();
+        parent1Id = parent1.id;
+        parent2Id = parent2 == null ? -1 : parent2.id;
+        mutations = 0;
     }
 
     /**
@@ -82,17 +191,14 @@ public class Genome implements Comparable {
             parent2 = temp;
         }
 
-        // get the geneMap for each parent
-        TreeMap<Integer, GeneConnection> geneMap1 = new TreeMap<>();
-        TreeMap<Integer, GeneConnection> geneMap2 = new TreeMap<>();
+        // the child carries on the mutation rates of the fitter parent
+        child.mutationRates = new HashMap<>(parent1.mutationRates);
 
-        for(GeneConnection connection: parent1.geneConnectionList){
-            geneMap1.put(connection.getInnovation(), connection);
-        }
-
-        for(GeneConnection connection: parent2.geneConnectionList){
-            geneMap2.put(connection.getInnovation(), connection);
-        }
+        // get the geneMap for each parent, from innovation to the index of the gene
+        GeneView genes1 = parent1.getGeneView();
+        GeneView genes2 = parent2.getGeneView();
+        TreeMap<Integer, Integer> geneMap1 = byInnovation(genes1);
+        TreeMap<Integer, Integer> geneMap2 = byInnovation(genes2);
 
         // get all unique innovations between parents
         Set<Integer> parentInnovations1 = geneMap1.keySet();
@@ -106,15 +212,15 @@ public class Genome implements Comparable {
 
             // if both parents have the same innovation the child inherits from one of them
             if (geneMap1.containsKey(innovation) && geneMap2.containsKey(innovation)) {
-                if (rand.nextBoolean()) {
-                    trait = new GeneConnection(geneMap1.get(innovation));
+                if (rand().nextBoolean()) {
+                    trait = copyGene(genes1, geneMap1.get(innovation));
                 } else {
-                    trait = new GeneConnection(geneMap2.get(innovation));
+                    trait = copyGene(genes2, geneMap2.get(innovation));
                 }
 
                 // if trait is recessive for one parent and not the other, child has 75% chance of recessive
-                if ((geneMap1.get(innovation).isEnabled() != geneMap2.get(innovation).isEnabled())) {
-                    if (rand.nextFloat() < 0.75f) {
+                if ((genes1.isEnabled(geneMap1.get(innovation)) != genes2.isEnabled(geneMap2.get(innovation)))) {
+                    if (rand().nextFloat() < 0.75f) {
                         trait.setEnabled(false);
                     } else {
                         trait.setEnabled(true);
@@ -124,26 +230,51 @@ public class Genome implements Comparable {
                 // if only one parent has the innovation and parents are equally fit, child inherits
             } else if (parent1.getFitness() == parent2.getFitness()) {
                 if (geneMap1.containsKey(innovation)) {
-                    trait = geneMap1.get(innovation);
+                    trait = copyGene(genes1, geneMap1.get(innovation));
                 } else {
-                    trait = geneMap2.get(innovation);
+                    trait = copyGene(genes2, geneMap2.get(innovation));
                 }
 
-                if (rand.nextBoolean()) {
+                if (rand().nextBoolean()) {
                     continue;
                 }
 
                 // if parents are not equally fit the child gets from parent 1, assumed to be the fittest
             } else {
-                trait = geneMap1.get(innovation);
+                trait = copyGene(genes1, geneMap1.get(innovation));
             }
 
             child.geneConnectionList.add(trait);
         }
 
+        // inherit the activation functions, preferring those of the fitter parent
+        child.nodeActivations.putAll(parent2.nodeActivations);
+        child.nodeActivations.putAll(parent1.nodeActivations);
+
         return child;
     }
 
+    /**
+     * @param genes the genes
+     * @return the index of the last gene with each innovation, by innovation
+     */
+    private static TreeMap<Integer, Integer> byInnovation(GeneView genes) {
+        TreeMap<Integer, Integer> geneMap = new TreeMap<>();
+        for (int gene = 0; gene < genes.size(); gene++) {
+            geneMap.put(genes.getInnovation(gene), gene);
+        }
+        return geneMap;
+    }
+
+    /**
+     * @param genes the genes
+     * @param gene the index of the gene, or null for a blank gene as the GeneConnection copy constructor gives
+     * @return a new gene object with the values of the gene
+     */
+    private static GeneConnection copyGene(GeneView genes, Integer gene) {
+        return gene == null ? new GeneConnection(null) : genes.copy(gene);
+    }
+
     /**
      * decide if two genomes belong to the same species
      *
@@ -152,6 +283,22 @@ public class Genome implements Comparable {
      * @return boolean indicating if the genomes are of the same species
      */
     public static boolean isSameSpecies(Genome genome1, Genome genome2){
+        return isSameSpecies(genome1, genome2, NEATConfig.COMPATIBILITY_THRESHOLD);
+    }
+
+    /**
+     * decide if two genomes belong to the same species with a given compatibility threshold
+     *
+     * @param genome1 genome 1
+     * @param genome2 genome 2
+     * @param compatibilityThreshold distance below which genomes are the same species
+     * @return boolean indicating if the genomes are of the same species
+     */
+    public static boolean isSameSpecies(Genome genome1, Genome genome2, float compatibilityThreshold){
+        if (isDifferentSpeciesBySignature(genome1, genome2, compatibilityThreshold)) {
+            return false;
+        }
+
         int matching = 0;
         int disjoint = 0;
         int excess = 0;
@@ -159,17 +306,11 @@ public class Genome implements Comparable {
         int lowMaxInnovation;
         float delta = 0;
 
-        // populate geneMap for each genome
-        TreeMap<Integer, GeneConnection> geneMap1 = new TreeMap<>();
-        TreeMap<Integer, GeneConnection> geneMap2 = new TreeMap<>();
-
-        for (GeneConnection connection: genome1.geneConnectionList) {
-            geneMap1.put(connection.getInnovation(), connection);
-        }
-
-        for (GeneConnection connection: genome2.geneConnectionList) {
-            geneMap2.put(connection.getInnovation(), connection);
-        }
+        // populate geneMap for each genome, from innovation to the index of the gene
+        GeneView genes1 = genome1.getGeneView();
+        GeneView genes2 = genome2.getGeneView();
+        TreeMap<Integer, Integer> geneMap1 = byInnovation(genes1);
+        TreeMap<Integer, Integer> geneMap2 = byInnovation(genes2);
 
         // find the lowest max innovation
         if (geneMap1.isEmpty() || geneMap2.isEmpty()) {
@@ -189,7 +330,7 @@ public class Genome implements Comparable {
             // if both parents have the same innovation then increment the matching count and weight difference
             if (geneMap1.containsKey(innovation) && geneMap2.containsKey(innovation)) {
                 matching ++;
-                weight += Math.abs(geneMap1.get(innovation).getWeight() - geneMap2.get(innovation).getWeight());
+                weight += Math.abs(genes1.getWeight(geneMap1.get(innovation)) - genes2.getWeight(geneMap2.get(innovation)));
             } else {
                 // for genes that belong to just one parent check if they are excess or disjoint genes
                 if (innovation < lowMaxInnovation) {
@@ -208,8 +349,8 @@ public class Genome implements Comparable {
             delta = (NEATConfig.EXCESS_COEFFICENT * excess + NEATConfig.DISJOINT_COEFFICENT * disjoint) / total + (NEATConfig.WEIGHT_COEFFICENT * weight) / matching;
         }
 
-        // decide based on distance and config if the two genomes are the same species
-        return delta < NEATConfig.COMPATIBILITY_THRESHOLD;
+        // decide based on distance and threshold if the two genomes are the same species
+        return delta < compatibilityThreshold;
     }
 
     /**
@@ -219,33 +360,232 @@ public class Genome implements Comparable {
      * @return outputs for the given input
      */
     public double[] evaluateNetwork(double[] inputs) {
-        double output[] = new double[NEATConfig.OUTPUTS];
-        generateNetwork();
+        double[] output = new double[NEATConfig.OUTPUTS];
+        evaluateNetwork(inputs, output);
+        return output;
+    }
 
-        // set the inputs as the nodes
-        for (int i = 0; i < NEATConfig.INPUTS; i++) {
-            nodes.get(i).setValue(inputs[i]);
+    /**
+     * takes the inputs and writes the output, does not allocate once the network is built
+     * safe to call from several threads at once as long as the genes do not change, the activation state
+     * is kept for the next call and a thread finding it in use evaluates with a state of its own
+     *
+     * @param inputs the inputs to the process
+     * @param output array the outputs are written to
+     */
+    public void evaluateNetwork(double[] inputs, double[] output) {
+        Network network = getNetwork();
+        NetworkState state = borrowState(network);
+        network.evaluate(inputs, output, state);
+        spareState.set(state);
+    }
+
+    /**
+     * takes the inputs and writes the output using a given activation state, so each thread or call can
+     * keep its own and nothing is shared between threads
+     *
+     * @param inputs the inputs to the process
+     * @param output array the outputs are written to
+     * @param state the activation state from createState(1)
+     */
+    public void evaluateNetwork(double[] inputs, double[] output, NetworkState state) {
+        getNetwork().evaluate(inputs, output, state);
+    }
+
+    /**
+     * takes sparse inputs and writes the output, inputs which are not given are 0
+     * the cost follows the number of inputs given, see Network.evaluateSparse
+     * safe to call from several threads at once as long as the genes do not change
+     *
+     * @param indices the inputs which are set, each at most once
+     * @param values the values of those inputs
+     * @param count the number of inputs set
+     * @param output array the outputs are written to
+     */
+    public void evaluateNetworkSparse(int[] indices, double[] values, int count, double[] output) {
+        Network network = getNetwork();
+        NetworkState state = borrowState(network);
+        network.evaluateSparse(indices, values, count, output, state);
+        spareState.set(state);
+    }
+
+    /**
+     * take the kept activation state, or create one if another thread has it or it belongs to an older network
+     * it is given back with spareState.set once the evaluation is done
+     *
+     * @param network the current network
+     * @return an activation state no other thread is using
+     */
+    private NetworkState borrowState(Network network) {
+        NetworkState state = spareState.getAndSet(null);
+        if (state == null || state.getNetwork() != network) {
+            state = new NetworkState(network);
+        }
+        return state;
+    }
+
+    /**
+     * create an activation state for recurrent evaluation with stepNetwork
+     * keep one per episode (or batch of episodes) and per thread
+     *
+     * @param episodes the number of independent episodes stepped together
+     * @return the activation state
+     */
+    public NetworkState createState(int episodes) {
+        return new NetworkState(getNetwork(), episodes);
+    }
+
+    /**
+     * recurrent evaluation, advance the state by one timestep carrying node values over from the last step
+     *
+     * @param state the activation state from createState
+     * @param inputs the inputs for this timestep, INPUTS values per episode
+     * @param output array the outputs are written to, OUTPUTS values per episode
+     */
+    public void stepNetwork(NetworkState state, double[] inputs, double[] output) {
+        getNetwork().step(state, inputs, output);
+    }
+
+    /**
+     * get the evaluation form of the network, it is built on first use and cached until the genes change
+     * safe to call from several threads at once as long as the genes do not change, threads racing the
+     * first call may each build it but only read the genes, and the final fields of the network publish it whole
+     *
+     * @return the evaluation form of the network
+     */
+    public Network getNetwork() {
+        // read once, so a thread racing a build never sees null
+        Network built = network;
+        if (built == null) {
+            built = new Network(getGeneView(), nodeActivations);
+            network = built;
+        }
+        return built;
+    }
+
+    /**
+     * quick check on the innovation signatures which can prove two genomes are of different species
+     * innovations both genomes have fall into the same bucket, so in each bucket they can not be more than
+     * the smaller of the two counts, the sum of which bounds the share of disjoint and excess genes in the
+     * distance from below
+     *
+     * @param genome1 genome 1
+     * @param genome2 genome 2
+     * @param compatibilityThreshold distance below which genomes are the same species
+     * @return boolean indicating if the genomes are certainly of different species, false if unsure
+     */
+    private static boolean isDifferentSpeciesBySignature(Genome genome1, Genome genome2, float compatibilityThreshold) {
+        int[] signature1 = genome1.getSignature();
+        int[] signature2 = genome2.getSignature();
+        int count = genome1.signatureCount + genome2.signatureCount;
+        if (count == 0) {
+            return false;
         }
 
-        for (Map.Entry<Integer, GeneNode> mapEntry : nodes.entrySet()) {
-            double sum = 0;
-            int key = mapEntry.getKey();
-            GeneNode node = mapEntry.getValue();
+        int maxMatching = 0;
+        for (int i = 0; i < signature1.length; i++) {
+            maxMatching += Math.min(signature1[i], signature2[i]);
+        }
 
-            if (key > NEATConfig.INPUTS) {
-                for (GeneConnection connection : node.getIncomingConnection()) {
-                    if (connection.isEnabled()) {
-                        sum += nodes.get(connection.getIntoNode()).getValue() * connection.getWeight();
-                    }
+        float minDelta = Math.min(NEATConfig.EXCESS_COEFFICENT, NEATConfig.DISJOINT_COEFFICENT)
+                * (count - 2 * maxMatching) / (count - maxMatching);
+        return minDelta >= compatibilityThreshold;
+    }
+
+    /**
+     * get the number of distinct innovations of the genes in each of SIGNATURE_BUCKETS buckets, by their
+     * low bits, built when first needed and dropped when a mutation adds a gene
+     *
+     * @return the signature
+     */
+    private int[] getSignature() {
+        if (signature == null) {
+            int[] counts = new int[SIGNATURE_BUCKETS];
+            HashSet<Integer> innovations = new HashSet<>();
+            GeneView genes = getGeneView();
+            for (int gene = 0; gene < genes.size(); gene++) {
+                int innovation = genes.getInnovation(gene);
+                if (innovations.add(innovation)) {
+                    counts[innovation & (SIGNATURE_BUCKETS - 1)]++;
                 }
-                node.setValue(sigmoid(sum));
             }
+            signatureCount = innovations.size();
+            signature = counts;
         }
+        return signature;
+    }
 
-        for (int i = 0; i < NEATConfig.OUTPUTS; i++) {
-            output[i] = nodes.get(NEATConfig.INPUTS + NEATConfig.HIDDEN_NODES + i).getValue();
+    /**
+     * drop the cached evaluation form after a structural change to the genes
+     * weight-only changes patch the cached form instead, see mutateWeight
+     */
+    private void invalidateNetwork() {
+        network = null;
+        spareState.set(null);
+    }
+
+    /**
+     * @return read access to the genes, in place wherever they are held
+     */
+    GeneView getGeneView() {
+        if (arena != null) {
+            return arena.view(arenaStamp, arenaOffset, arenaGenes);
         }
-        return output;
+        return GeneView.of(geneConnectionList);
+    }
+
+    /**
+     * pack the genes into the generation a GeneArena is packing, the genome becomes a handle to them
+     * genes packed in the previous generation of the same arena are copied as bytes
+     *
+     * @param target the arena
+     */
+    void packInto(GeneArena target) {
+        if (arena == target && arenaStamp == target.getStamp()) {
+            return;
+        }
+        if (arena == target) {
+            arenaOffset = target.repack(arenaStamp, arenaOffset, arenaGenes);
+        } else {
+            GeneView genes = getGeneView();
+            arenaGenes = genes.size();
+            arenaOffset = target.pack(genes);
+        }
+        arena = target;
+        arenaStamp = target.getStamp();
+        geneConnectionList = null;
+        // the nodes are rebuilt from the genes for each mutation, and would keep the old gene objects alive
+        nodes.clear();
+    }
+
+    /**
+     * decode genes packed in a GeneArena back onto the heap before changing them, packed genes are read only
+     */
+    private void unpack() {
+        if (arena != null) {
+            geneConnectionList = getGeneView().copyAll();
+            arena = null;
+        }
+    }
+
+    /**
+     * compile the network into straight-line bytecode, see NetworkCompiler
+     *
+     * @return the compiled network
+     */
+    public CompiledNetwork compile() {
+        return NetworkCompiler.compile(this);
+    }
+
+    /**
+     * quantize the network into fixed point for serving, see QuantizedNetwork
+     * the error against evaluateNetwork on the calibration inputs is available from the result
+     *
+     * @param calibrationInputs representative inputs used to pick the scales and measure the error
+     * @return the quantized network
+     */
+    public QuantizedNetwork quantize(double[][] calibrationInputs) {
+        return QuantizedNetwork.quantize(this, calibrationInputs);
     }
 
     /**
@@ -262,38 +602,37 @@ public class Genome implements Comparable {
 
         // output layer
         for (int i = NEATConfig.INPUTS + NEATConfig.HIDDEN_NODES; i < NEATConfig.INPUTS + NEATConfig.HIDDEN_NODES + NEATConfig.OUTPUTS; i++) {
-            nodes.put(i, new GeneNode(0));
+            nodes.put(i, new GeneNode(0, getActivation(i)));
         }
 
         // hidden layer - add any nodes required by the current connections
         for (GeneConnection connection : geneConnectionList) {
             if (!nodes.containsKey(connection.getIntoNode())) {
-                nodes.put(connection.getIntoNode(), new GeneNode(0));
+                nodes.put(connection.getIntoNode(), new GeneNode(0, getActivation(connection.getIntoNode())));
             }
             if (!nodes.containsKey(connection.getOutNode())) {
-                nodes.put(connection.getOutNode(), new GeneNode(0));
+                nodes.put(connection.getOutNode(), new GeneNode(0, getActivation(connection.getOutNode())));
             }
             nodes.get(connection.getOutNode()).getIncomingConnection().add(connection);
         }
     }
 
     /**
-     * calculate the sigmoid function ->  1 / (1 + exp(-x))
-     *
-     * @param x value
-     * @return the sigmoid of x
+     * perform mutations
      */
-    private double sigmoid(double x) {
-        return (1 / (1 + Math.exp(-4.9 * x)));
+    public void mutate() {
+        mutate(null);
     }
 
     /**
-     * perform mutations
+     * perform mutations, numbering new structure through a registry shared with other gene pools
+     *
+     * @param registry the registry, or null to give every structural mutation new numbers
      */
-    public void mutate() {
+    void mutate(InnovationRegistry registry) {
         // mutate the mutation rates by 5%
         for (Map.Entry<MutationKeys, Float> entry : mutationRates.entrySet()) {
-            if (rand.nextBoolean()) {
+            if (rand().nextBoolean()) {
                 mutationRates.put(entry.getKey(), 0.95f * entry.getValue());
             } else {
                 mutationRates.put(entry.getKey(), 1.05263f * entry.getValue());
@@ -301,23 +640,29 @@ public class Genome implements Comparable {
         }
 
         // mutate the actual geneConnections
-        if (rand.nextFloat() <= mutationRates.get(MutationKeys.WEIGHT_MUTATION_CHANCE)) {
+        if (rand().nextFloat() <= mutationRates.get(MutationKeys.WEIGHT_MUTATION_CHANCE)) {
             mutateWeight();
+            mutations |= WEIGHT_MUTATION;
         }
-        if (rand.nextFloat() <= mutationRates.get(MutationKeys.CONNECTION_MUTATION_CHANCE)) {
-            mutateAddConnection(false);
+        if (rand().nextFloat() <= mutationRates.get(MutationKeys.CONNECTION_MUTATION_CHANCE)) {
+            mutateAddConnection(false, registry);
+            mutations |= CONNECTION_MUTATION;
         }
-        if (rand.nextFloat() <= mutationRates.get(MutationKeys.BIAS_CONNECTION_MUTATION_CHANCE)) {
-            mutateAddConnection(true);
+        if (rand().nextFloat() <= mutationRates.get(MutationKeys.BIAS_CONNECTION_MUTATION_CHANCE)) {
+            mutateAddConnection(true, registry);
+            mutations |= BIAS_CONNECTION_MUTATION;
         }
-        if (rand.nextFloat() <= mutationRates.get(MutationKeys.NODE_MUTATION_CHANCE)) {
-            mutateAddNode();
+        if (rand().nextFloat() <= mutationRates.get(MutationKeys.NODE_MUTATION_CHANCE)) {
+            mutateAddNode(registry);
+            mutations |= NODE_MUTATION;
         }
-        if (rand.nextFloat() <= mutationRates.get(MutationKeys.DISABLE_MUTATION_CHANCE)) {
+        if (rand().nextFloat() <= mutationRates.get(MutationKeys.DISABLE_MUTATION_CHANCE)) {
             disableMutate();
+            mutations |= DISABLE_MUTATION;
         }
-        if (rand.nextFloat() <= mutationRates.get(MutationKeys.ENABLE_MUTATION_CHANCE)) {
+        if (rand().nextFloat() <= mutationRates.get(MutationKeys.ENABLE_MUTATION_CHANCE)) {
             enableMutate();
+            mutations |= ENABLE_MUTATION;
         }
     }
 
@@ -325,32 +670,43 @@ public class Genome implements Comparable {
      * mutate the weight on the connections
      */
     private void mutateWeight() {
+        unpack();
         for (GeneConnection connection : geneConnectionList) {
-            if (rand.nextFloat() < NEATConfig.WEIGHT_CHANCE) {
-                if (rand.nextFloat() < NEATConfig.PERTURB_CHANCE) {
+            if (rand().nextFloat() < mutationRates.get(MutationKeys.WEIGHT_CHANCE)) {
+                if (rand().nextFloat() < mutationRates.get(MutationKeys.PERTURB_CHANCE)) {
                     // perform a perturbation on the existing weight - add a random amount to it
-                    connection.setWeight(connection.getWeight() + (2 * rand.nextFloat() - 1) * NEATConfig.STEPS);
+                    connection.setWeight(connection.getWeight() + (2 * rand().nextFloat() - 1) * mutationRates.get(MutationKeys.STEPS));
                 } else {
                     // set a new random weight
-                    connection.setWeight(4 * rand.nextFloat() - 2);
+                    connection.setWeight(4 * rand().nextFloat() - 2);
                 }
             }
         }
+
+        // the topology is unchanged so the cached network only needs its weights patched
+        if (network != null) {
+            network.updateWeights(geneConnectionList);
+        }
     }
 
     /**
      * mutation which can add a new connection
      *
      * @param forceBais
+     * @param registry the registry numbering the connection, or null for a new innovation
      */
-    private void mutateAddConnection(boolean forceBais) {
+    private void mutateAddConnection(boolean forceBais, InnovationRegistry registry) {
+        if (countEnabledConnections() >= NEATConfig.MAX_ENABLED_CONNECTIONS) {
+            return;
+        }
+        unpack();
         generateNetwork();
 
         // define random parameters
         int i = 0;
         int j = 0;
-        int random2 = rand.nextInt(nodes.size() - NEATConfig.INPUTS - 1) + NEATConfig.INPUTS + 1;
-        int random1 = rand.nextInt(nodes.size());
+        int random2 = rand().nextInt(nodes.size() - NEATConfig.INPUTS - 1) + NEATConfig.INPUTS + 1;
+        int random1 = rand().nextInt(nodes.size());
         if (forceBais) {
             random1 = NEATConfig.INPUTS;
         }
@@ -374,7 +730,8 @@ public class Genome implements Comparable {
             j++;
         }
 
-        if (node1 >= node2) {
+        // feed-forward networks only connect lower nodes to higher ones
+        if (!NEATConfig.RECURRENT && node1 >= node2) {
             return;
         }
 
@@ -388,34 +745,66 @@ public class Genome implements Comparable {
         }
 
         // add a connection between the two random nodes
-        geneConnectionList.add(new GeneConnection(node1, node2, InnovationCounter.newInnovation(), 4 * rand.nextFloat() - 2, true));
+        int innovation = registry == null ? InnovationCounter.newInnovation() : registry.connectionInnovation(node1, node2);
+        geneConnectionList.add(new GeneConnection(node1, node2, innovation, 4 * rand().nextFloat() - 2, true));
+        invalidateNetwork();
+        signature = null;
 
     }
 
     /**
      * mutation which picks a random connection and can add a new node in the middle of it
+     *
+     * @param registry the registry numbering the node and its connections, or null for new numbers
      */
-    private void mutateAddNode() {
+    private void mutateAddNode(InnovationRegistry registry) {
+        unpack();
         generateNetwork();
+
+        // the new node has its own two connections in place of the one it splits
+        int hiddenNodes = nodes.size() - NEATConfig.INPUTS - 1 - NEATConfig.OUTPUTS;
+        if (hiddenNodes >= NEATConfig.MAX_NODES || countEnabledConnections() >= NEATConfig.MAX_ENABLED_CONNECTIONS) {
+            return;
+        }
+
         if (geneConnectionList.size() > 0) {
             int timeoutCount = 0;
-            GeneConnection randomConnection = geneConnectionList.get(rand.nextInt(geneConnectionList.size()));
+            GeneConnection randomConnection = geneConnectionList.get(rand().nextInt(geneConnectionList.size()));
 
             // loop until we find an enabled connection or we run out of hidden nodes
             while (!randomConnection.isEnabled()) {
-                randomConnection = geneConnectionList.get(rand.nextInt(geneConnectionList.size()));
+                randomConnection = geneConnectionList.get(rand().nextInt(geneConnectionList.size()));
                 timeoutCount++;
                 if (timeoutCount > NEATConfig.HIDDEN_NODES) {
                     return;
                 }
             }
 
+            int nextNode = nodes.size() - NEATConfig.OUTPUTS;
+            if (registry != null) {
+                // the same split gets the same node id in every genome, the next one if this genome already has it
+                int occurrence = 0;
+                nextNode = registry.splitNode(randomConnection.getInnovation(), occurrence);
+                while (nodes.containsKey(nextNode)) {
+                    nextNode = registry.splitNode(randomConnection.getInnovation(), ++occurrence);
+                }
+                if (nextNode >= NEATConfig.INPUTS + NEATConfig.HIDDEN_NODES) {
+                    return;
+                }
+            }
+
             // disable the random connection and add a new connection
             // essentially adds a new node in the middle of the existing connection
-            int nextNode = nodes.size() - NEATConfig.OUTPUTS;
+            nodeActivations.put(nextNode, NEATConfig.HIDDEN_ACTIVATION);
             randomConnection.setEnabled(false);
-            geneConnectionList.add(new GeneConnection(randomConnection.getIntoNode(), nextNode, InnovationCounter.newInnovation(), 1, true));
-            geneConnectionList.add(new GeneConnection(nextNode, randomConnection.getOutNode(), InnovationCounter.newInnovation(), randomConnection.getWeight(), true));
+            int intoNode = randomConnection.getIntoNode();
+            int outNode = randomConnection.getOutNode();
+            int innovation1 = registry == null ? InnovationCounter.newInnovation() : registry.connectionInnovation(intoNode, nextNode);
+            int innovation2 = registry == null ? InnovationCounter.newInnovation() : registry.connectionInnovation(nextNode, outNode);
+            geneConnectionList.add(new GeneConnection(intoNode, nextNode, innovation1, 1, true));
+            geneConnectionList.add(new GeneConnection(nextNode, outNode, innovation2, randomConnection.getWeight(), true));
+            invalidateNetwork();
+            signature = null;
         }
     }
 
@@ -423,9 +812,13 @@ public class Genome implements Comparable {
      * mutation which picks a random connection and disables it - makes it recessive
      */
     private void disableMutate() {
+        unpack();
         if (geneConnectionList.size() > 0) {
-            GeneConnection randomConnection = geneConnectionList.get(rand.nextInt(geneConnectionList.size()));
-            randomConnection.setEnabled(false);
+            GeneConnection randomConnection = geneConnectionList.get(rand().nextInt(geneConnectionList.size()));
+            if (randomConnection.isEnabled()) {
+                randomConnection.setEnabled(false);
+                invalidateNetwork();
+            }
         }
     }
 
@@ -433,10 +826,106 @@ public class Genome implements Comparable {
      * mutation which picks a random connection and enables it - makes it dominant
      */
     private void enableMutate() {
+        unpack();
         if (geneConnectionList.size() > 0) {
-            GeneConnection randomCon = geneConnectionList.get(rand.nextInt(geneConnectionList.size()));
-            randomCon.setEnabled(true);
+            GeneConnection randomCon = geneConnectionList.get(rand().nextInt(geneConnectionList.size()));
+            if (!randomCon.isEnabled() && countEnabledConnections() < NEATConfig.MAX_ENABLED_CONNECTIONS) {
+                randomCon.setEnabled(true);
+                invalidateNetwork();
+            }
+        }
+    }
+
+    /**
+     * @return the number of enabled connection genes
+     */
+    private int countEnabledConnections() {
+        int enabled = 0;
+        GeneView genes = getGeneView();
+        for (int gene = 0; gene < genes.size(); gene++) {
+            if (genes.isEnabled(gene)) {
+                enabled++;
+            }
+        }
+        return enabled;
+    }
+
+    /**
+     * write the genes in a compact binary form, enough to rebuild the network with readFrom
+     *
+     * @param out where to write the genes
+     * @throws IOException if writing fails
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        GeneView genes = getGeneView();
+        out.writeInt(genes.size());
+        for (int gene = 0; gene < genes.size(); gene++) {
+            out.writeInt(genes.getIntoNode(gene));
+            out.writeInt(genes.getOutNode(gene));
+            out.writeInt(genes.getInnovation(gene));
+            out.writeDouble(genes.getWeight(gene));
+            out.writeBoolean(genes.isEnabled(gene));
+        }
+        out.writeInt(nodeActivations.size());
+        for (Map.Entry<Integer, ActivationFunction> entry : nodeActivations.entrySet()) {
+            out.writeInt(entry.getKey());
+            out.writeByte(entry.getValue().ordinal());
+        }
+    }
+
+    /**
+     * read genes written by writeTo into a new genome
+     *
+     * @param in where to read the genes from
+     * @return the genome
+     * @throws IOException if reading fails
+     */
+    public static Genome readFrom(DataInput in) throws IOException {
+        Genome genome = new Genome();
+        int connections = in.readInt();
+        for (int i = 0; i < connections; i++) {
+            genome.geneConnectionList.add(new GeneConnection(in.readInt(), in.readInt(), in.readInt(), in.readDouble(), in.readBoolean()));
+        }
+        int activations = in.readInt();
+        for (int i = 0; i < activations; i++) {
+            genome.nodeActivations.put(in.readInt(), ActivationFunction.values()[in.readByte()]);
         }
+        return genome;
+    }
+
+    /**
+     * build a genome from its genes, used to reconstruct genomes from a GenealogyLog
+     *
+     * @param genes the connection genes
+     * @param activations the activation functions by node id
+     * @return the genome
+     */
+    static Genome fromGenes(ArrayList<GeneConnection> genes, Map<Integer, ActivationFunction> activations) {
+        Genome genome = new Genome();
+        genome.geneConnectionList.addAll(genes);
+        genome.nodeActivations.putAll(activations);
+        return genome;
+    }
+
+    /**
+     * get the activation function of a node
+     *
+     * @param node the node id
+     * @return the activation function
+     */
+    public ActivationFunction getActivation(int node) {
+        return nodeActivations.getOrDefault(node, Network.defaultActivation(node));
+    }
+
+    /**
+     * set the activation function of a node
+     *
+     * @param node the node id
+     * @param activation the activation function
+     */
+    public void setActivation(int node, ActivationFunction activation) {
+        nodeActivations.put(node, activation);
+        invalidateNetwork();
     }
 
     public double getFitness() {
@@ -459,6 +948,56 @@ public class Genome implements Comparable {
         return points;
     }
 
+    /**
+     * @return identity of the genome, kept by copies and renewed when it is born as a child
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * @return identity of the parent the genes were copied from or bred with, -1 for an initial genome
+     */
+    public long getParent1Id() {
+        return parent1Id;
+    }
+
+    /**
+     * @return identity of the other parent when bred, -1 otherwise
+     */
+    public long getParent2Id() {
+        return parent2Id;
+    }
+
+    /**
+     * @return bits of the kinds of mutation applied since the genome was born
+     */
+    int getMutations() {
+        return mutations;
+    }
+
+    /**
+     * @return the genes, decoded into a new list while they are packed in a GeneArena
+     */
+    ArrayList<GeneConnection> getGenes() {
+        return arena != null ? getGeneView().copyAll() : geneConnectionList;
+    }
+
+    Map<Integer, ActivationFunction> getNodeActivations() {
+        return nodeActivations;
+    }
+
+    /**
+     * @return the behaviour descriptor set by the environment, see NoveltyEnvironment
+     */
+    public double[] getBehaviour() {
+        return behaviour;
+    }
+
+    public void setBehaviour(double[] behaviour) {
+        this.behaviour = behaviour;
+    }
+
     public void setPoints(double points) {
         this.points = points;
     }
@@ -479,7 +1018,7 @@ public class Genome implements Comparable {
     public String toString() {
         return "Genome{" +
                 "fitness=" + fitness +
-                ", geneConnectionList=" + geneConnectionList +
+                ", geneConnectionList=" + getGenes() +
                 ", nodeGenes=" + nodes +
                 '}';
     }
@@ -0,0 +1,125 @@
+package NEAT;
+
+import NEAT.config.NEATConfig;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * a group of genomes whose networks share the same topology and only differ in their weights
+ * the network is traversed once per input for the whole group, with the weights laid out as a
+ * connection by genome matrix so each connection reads a contiguous column of weights
+ * with NEATConfig.FLOAT_EVALUATION set the matrix and values are single precision, halving the memory
+ * traffic and doubling the vector lanes of the inner loops
+ *
+ * not thread safe, each thread should evaluate its own batches
+ */
+public class GenomeBatch {
+    private final ArrayList<Genome> genomes;
+    private final Network network;
+    private final double[] weights;
+    private final double[] values;
+    private final double[] sums;
+    private final float[] floatWeights;
+    private final float[] floatValues;
+    private final float[] floatSums;
+
+    /**
+     * create a batch from genomes with the same topology
+     *
+     * @param genomes the genomes
+     */
+    public GenomeBatch(ArrayList<Genome> genomes) {
+        if (genomes.isEmpty()) {
+            throw new IllegalArgumentException("a batch needs at least one genome");
+        }
+        this.genomes = genomes;
+        this.network = genomes.get(0).getNetwork();
+
+        int size = genomes.size();
+        int cells = network.getConnectionCount() * size;
+        weights = NEATConfig.FLOAT_EVALUATION ? null : new double[cells];
+        floatWeights = NEATConfig.FLOAT_EVALUATION ? new float[cells] : null;
+        for (int genome = 0; genome < size; genome++) {
+            Network genomeNetwork = genomes.get(genome).getNetwork();
+            if (!network.sameTopology(genomeNetwork)) {
+                throw new IllegalArgumentException("genomes in a batch must share the same topology");
+            }
+            for (int connection = 0; connection < network.getConnectionCount(); connection++) {
+                if (NEATConfig.FLOAT_EVALUATION) {
+                    floatWeights[connection * size + genome] = (float) genomeNetwork.getWeight(connection);
+                } else {
+                    weights[connection * size + genome] = genomeNetwork.getWeight(connection);
+                }
+            }
+        }
+        values = NEATConfig.FLOAT_EVALUATION ? null : new double[network.getSlotCount() * size];
+        sums = NEATConfig.FLOAT_EVALUATION ? null : new double[size];
+        floatValues = NEATConfig.FLOAT_EVALUATION ? new float[network.getSlotCount() * size] : null;
+        floatSums = NEATConfig.FLOAT_EVALUATION ? new float[size] : null;
+    }
+
+    /**
+     * group genomes into batches by the topology of their networks
+     *
+     * @param population the genomes
+     * @return the batches
+     */
+    public static ArrayList<GenomeBatch> groupByTopology(ArrayList<Genome> population) {
+        HashMap<Integer, ArrayList<ArrayList<Genome>>> groupsByHash = new HashMap<>();
+        ArrayList<ArrayList<Genome>> groups = new ArrayList<>();
+
+        for (Genome genome : population) {
+            Network network = genome.getNetwork();
+            ArrayList<ArrayList<Genome>> candidates = groupsByHash.computeIfAbsent(network.getTopologyHash(), k -> new ArrayList<>());
+            ArrayList<Genome> group = null;
+            for (ArrayList<Genome> candidate : candidates) {
+                if (candidate.get(0).getNetwork().sameTopology(network)) {
+                    group = candidate;
+                    break;
+                }
+            }
+            if (group == null) {
+                group = new ArrayList<>();
+                candidates.add(group);
+                groups.add(group);
+            }
+            group.add(genome);
+        }
+
+        ArrayList<GenomeBatch> batches = new ArrayList<>();
+        for (ArrayList<Genome> group : groups) {
+            batches.add(new GenomeBatch(group));
+        }
+        return batches;
+    }
+
+    /**
+     * evaluate the same inputs with every genome of the batch
+     *
+     * @param inputs the inputs to the process
+     * @param output array the outputs are written to, OUTPUTS values per genome in batch order
+     */
+    public void evaluate(double[] inputs, double[] output) {
+        if (NEATConfig.FLOAT_EVALUATION) {
+            network.evaluateBatch(floatWeights, genomes.size(), floatValues, floatSums, inputs, output);
+        } else {
+            network.evaluateBatch(weights, genomes.size(), values, sums, inputs, output);
+        }
+    }
+
+    /**
+     * @return a new array large enough for the output of evaluate
+     */
+    public double[] createOutput() {
+        return new double[genomes.size() * NEATConfig.OUTPUTS];
+    }
+
+    public ArrayList<Genome> getGenomes() {
+        return genomes;
+    }
+
+    public int size() {
+        return genomes.size();
+    }
+}
@@ -1,19 +1,22 @@
 package NEAT;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * class which exposes a utility function for incrementing the innovation counter
+ * the counter is shared by every gene pool in the application, so each structural mutation gets a number
+ * of its own, gene pools which should give the same mutation the same number share an InnovationRegistry
  */
 public class InnovationCounter {
 
-    private static int innovation = 0;
+    private static final AtomicInteger innovation = new AtomicInteger(0);
 
     /**
-     * increments the innovation counter
+     * increments the innovation counter, safe to call from several threads
      *
      * @return incremented innovation
      */
     public static int newInnovation() {
-        innovation++;
-        return innovation;
+        return innovation.incrementAndGet();
     }
 }
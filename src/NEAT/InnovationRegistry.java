@@ -0,0 +1,51 @@
+package NEAT;
+
+import NEAT.config.NEATConfig;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * registry of the structural innovations of a run, shared by the gene pools given it with
+ * GenePool.setInnovationRegistry, see IslandModel
+ * a connection gets the same innovation number whichever of the gene pools adds it, keyed by the nodes it
+ * joins, and splitting a connection gets the same hidden node id, keyed by the split connection, so
+ * genomes from different gene pools line up when they are crossed over
+ *
+ * the registry grows by one entry per distinct connection and split, it lasts as long as the run which
+ * created it, gene pools without a registry give every structural mutation new numbers
+ */
+public class InnovationRegistry {
+    private final AtomicInteger hiddenNode = new AtomicInteger(NEATConfig.INPUTS + 1);
+    private final ConcurrentHashMap<Long, Integer> connectionInnovations = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Integer> splitNodes = new ConcurrentHashMap<>();
+
+    /**
+     * get the innovation of a connection, taking a new one from the InnovationCounter the first time the
+     * connection is added, safe to call from several threads
+     *
+     * @param intoNode the node the connection comes from
+     * @param outNode the node the connection goes to
+     * @return the innovation of the connection
+     */
+    public int connectionInnovation(int intoNode, int outNode) {
+        return connectionInnovations.computeIfAbsent(key(intoNode, outNode), key -> InnovationCounter.newInnovation());
+    }
+
+    /**
+     * get the id of the hidden node added by splitting a connection, registering a new one the first time
+     * the split is seen, safe to call from several threads
+     * a genome which already has the node, because it split the connection before, asks for the next occurrence
+     *
+     * @param innovation the innovation of the split connection
+     * @param occurrence how many times the genome already split the connection, 0 the first time
+     * @return the hidden node id, NEATConfig.INPUTS + NEATConfig.HIDDEN_NODES or more once the ids run out
+     */
+    public int splitNode(int innovation, int occurrence) {
+        return splitNodes.computeIfAbsent(key(innovation, occurrence), key -> hiddenNode.getAndIncrement());
+    }
+
+    private static long key(int high, int low) {
+        return ((long) high << Integer.SIZE) | (low & 0xFFFFFFFFL);
+    }
+}
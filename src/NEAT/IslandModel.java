@@ -0,0 +1,143 @@
+package NEAT;
+
+import NEAT.config.NEATConfig;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * island model evolution: several gene pools evolve independently on their own threads, and every
+ * NEATConfig.MIGRATION_INTERVAL generations each island sends copies of its best genomes to the next
+ * island in a ring
+ * the islands share an InnovationRegistry, so migrants line up with the genomes of the island they join
+ *
+ * islands only wait on each other at migrations: each posts its migrants, waits at a phaser until every
+ * island has posted and then collects the migrants of the previous island, so no migration is missed
+ * however fast the islands run
+ * each island posts to two mailboxes in turn, so migrants for the next migration can not replace ones
+ * which have not been collected yet, and an island which stops or fails leaves the phaser so the others go on
+ */
+public class IslandModel {
+    private final ArrayList<GenePool> islands = new ArrayList<>();
+    private final ArrayList<Environment> environments = new ArrayList<>();
+    private final AtomicReferenceArray<ArrayList<Genome>> mailboxes;
+
+    /**
+     * create the islands, each with a new gene pool
+     *
+     * @param islandCount the number of islands
+     * @param environmentFactory creates the environment of each island
+     */
+    public IslandModel(int islandCount, Supplier<Environment> environmentFactory) {
+        InnovationRegistry registry = new InnovationRegistry();
+        for (int i = 0; i < islandCount; i++) {
+            GenePool pool = new GenePool();
+            pool.setInnovationRegistry(registry);
+            pool.initializePool();
+            islands.add(pool);
+            environments.add(environmentFactory.get());
+        }
+        mailboxes = new AtomicReferenceArray<>(2 * islandCount);
+    }
+
+    /**
+     * evolve every island on its own thread, the genomes are evaluated at the end
+     *
+     * @param generations the number of generations to evolve for
+     * @return the best genome across all islands
+     */
+    public Genome evolve(int generations) {
+        ExecutorService executor = Executors.newFixedThreadPool(islands.size());
+        Phaser migration = new Phaser(islands.size());
+        try {
+            ArrayList<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < islands.size(); i++) {
+                int island = i;
+                futures.add(executor.submit(() -> evolveIsland(island, generations, migration)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while evolving islands", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("an island failed to evolve", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return getTopGenome();
+    }
+
+    /**
+     * evolve a single island
+     *
+     * @param island index of the island
+     * @param generations the number of generations to evolve for
+     * @param migration the phaser the islands meet at for each migration
+     */
+    private void evolveIsland(int island, int generations, Phaser migration) {
+        GenePool pool = islands.get(island);
+        Environment environment = environments.get(island);
+
+        try {
+            for (int generation = 1; ; generation++) {
+                pool.evaluateFitness(environment);
+                if (generation >= generations) {
+                    return;
+                }
+
+                ArrayList<Genome> arrivals = null;
+                if (islands.size() > 1 && generation % NEATConfig.MIGRATION_INTERVAL == 0) {
+                    // send copies of the best genomes on and collect the ones sent by the previous island
+                    ArrayList<Genome> migrants = new ArrayList<>();
+                    for (Genome genome : pool.getTopGenomes(NEATConfig.MIGRANTS)) {
+                        migrants.add(new Genome(genome));
+                    }
+                    int slot = (generation / NEATConfig.MIGRATION_INTERVAL) & 1;
+                    mailboxes.set(2 * island + slot, migrants);
+                    migration.arriveAndAwaitAdvance();
+                    int previous = (island + islands.size() - 1) % islands.size();
+                    arrivals = mailboxes.getAndSet(2 * previous + slot, null);
+                }
+
+                pool.breedNewGeneration();
+
+                // migrants join the new generation and are evaluated with it
+                if (arrivals != null) {
+                    for (Genome genome : arrivals) {
+                        pool.addToSpecies(genome);
+                    }
+                }
+            }
+        } finally {
+            migration.arriveAndDeregister();
+        }
+    }
+
+    /**
+     * get the best genome across all islands, by raw fitness
+     *
+     * @return the best genome
+     */
+    public Genome getTopGenome() {
+        Genome best = null;
+        for (GenePool pool : islands) {
+            Genome genome = pool.getTopGenome();
+            if (best == null || genome.getPoints() > best.getPoints()) {
+                best = genome;
+            }
+        }
+        return best;
+    }
+
+    public ArrayList<GenePool> getIslands() {
+        return islands;
+    }
+}
@@ -0,0 +1,91 @@
+package NEAT;
+
+import NEAT.config.NEATConfig;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * evaluates each generation on a window of NEATConfig.MINI_BATCH_SIZE samples instead of every sample,
+ * so the time of a generation does not depend on the number of samples
+ * the windows are visited in an order shuffled from the seed, every window once before any repeats,
+ * and the gene pool revalidates its champions on every sample each NEATConfig.MINI_BATCH_REVALIDATION_INTERVAL
+ * generations
+ *
+ * the windows are contiguous so the samples should be in random order
+ */
+public class MiniBatchEnvironment implements Environment {
+    private final SampleEnvironment environment;
+    private final Random random;
+    private final int[] windows;
+    private int nextWindow;
+    private int generation = 0;
+
+    /**
+     * @param environment the environment which scores the samples
+     * @param seed the seed of the window order
+     */
+    public MiniBatchEnvironment(SampleEnvironment environment, long seed) {
+        this.environment = environment;
+        this.random = new Random(seed);
+        long windowCount = (environment.getSampleCount() + NEATConfig.MINI_BATCH_SIZE - 1) / NEATConfig.MINI_BATCH_SIZE;
+        windows = new int[(int) Math.max(1, windowCount)];
+        for (int i = 0; i < windows.length; i++) {
+            windows[i] = i;
+        }
+        nextWindow = windows.length;
+    }
+
+    @Override
+    public void evaluateFitness(ArrayList<Genome> population) {
+        long from = nextWindow() * NEATConfig.MINI_BATCH_SIZE;
+        long to = Math.min(environment.getSampleCount(), from + NEATConfig.MINI_BATCH_SIZE);
+
+        // scale the window up to every sample so the fitness is comparable with validate
+        double scale = (double) environment.getSampleCount() / Math.max(1, to - from);
+        for (Genome genome : population) {
+            genome.setFitness(environment.fitness(environment.scoreSamples(genome, from, to) * scale));
+        }
+        generation++;
+    }
+
+    /**
+     * get the fitness of a genome over every sample
+     *
+     * @param genome the genome
+     * @return the fitness
+     */
+    public double validate(Genome genome) {
+        return environment.fitness(environment.scoreSamples(genome, 0, environment.getSampleCount()));
+    }
+
+    /**
+     * @return boolean indicating if the champions of the last generation evaluated should be revalidated,
+     * which is the case for the first generation so there is always a champion
+     */
+    public boolean isRevalidationDue() {
+        return (generation - 1) % NEATConfig.MINI_BATCH_REVALIDATION_INTERVAL == 0;
+    }
+
+    public SampleEnvironment getEnvironment() {
+        return environment;
+    }
+
+    /**
+     * get the next window, reshuffling the windows once they have all been visited
+     *
+     * @return the index of the window
+     */
+    private int nextWindow() {
+        if (nextWindow == windows.length) {
+            for (int i = windows.length - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int window = windows[i];
+                windows[i] = windows[j];
+                windows[j] = window;
+            }
+            nextWindow = 0;
+        }
+        return windows[nextWindow++];
+    }
+}
@@ -0,0 +1,641 @@
+package NEAT;
+
+import NEAT.config.NEATConfig;
+
+import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+
+/**
+ * array based evaluation form of a genome network
+ *
+ * disabled genes are dropped and hidden nodes which can not reach an output are pruned, so evaluation
+ * only visits the nodes and connections which contribute to the outputs
+ *
+ * computed nodes are topologically sorted so a single pass gives every node the current values of the
+ * nodes feeding it, if the genes form a cycle the connections closing it read the value from before the
+ * pass: 0 for a feed-forward evaluation, the previous timestep when stepping a recurrent NetworkState
+ *
+ * values are stored by slot: slots 0 to INPUTS - 1 are the inputs, slot INPUTS is the bias and the
+ * remaining slots are the computed nodes in evaluation order
+ *
+ * with NEATConfig.FLOAT_EVALUATION set the weights are also kept in single precision and evaluation
+ * runs in single precision, inputs and outputs stay double
+ */
+public class Network {
+    private final int[] nodeIds;
+    private final int[] incomingStart;
+    private final int[] incomingSource;
+    private final int[] weightGenes;
+    private final double[] weights;
+    private final float[] floatWeights;
+    private final ActivationFunction[] activations;
+    private final int[] outputSlots;
+    private final boolean cyclic;
+    private final int topologyHash;
+    private volatile SparseLayout sparseLayout;
+
+    /**
+     * the connections regrouped for evaluateSparse: those leaving each input, pushed from the inputs
+     * which are set, and the rest by the node they lead into, pulled as usual
+     * connections are referred to by their index in incomingSource and weights
+     */
+    private static class SparseLayout {
+        final int[] inputStart = new int[NEATConfig.INPUTS + 1];
+        final int[] inputTarget;
+        final int[] inputConnection;
+        final int[] internalStart;
+        final int[] internalConnection;
+
+        SparseLayout(int[] incomingStart, int[] incomingSource) {
+            int computedCount = incomingStart.length - 1;
+            for (int source : incomingSource) {
+                if (source < NEATConfig.INPUTS) {
+                    inputStart[source + 1]++;
+                }
+            }
+            for (int i = 0; i < NEATConfig.INPUTS; i++) {
+                inputStart[i + 1] += inputStart[i];
+            }
+            inputTarget = new int[inputStart[NEATConfig.INPUTS]];
+            inputConnection = new int[inputTarget.length];
+            internalStart = new int[computedCount + 1];
+            internalConnection = new int[incomingSource.length - inputTarget.length];
+
+            int[] next = Arrays.copyOf(inputStart, NEATConfig.INPUTS);
+            int internal = 0;
+            for (int i = 0; i < computedCount; i++) {
+                internalStart[i] = internal;
+                for (int j = incomingStart[i]; j < incomingStart[i + 1]; j++) {
+                    int source = incomingSource[j];
+                    if (source < NEATConfig.INPUTS) {
+                        inputTarget[next[source]] = i;
+                        inputConnection[next[source]++] = j;
+                    } else {
+                        internalConnection[internal++] = j;
+                    }
+                }
+            }
+            internalStart[computedCount] = internal;
+        }
+    }
+
+    /**
+     * build the evaluation form from the genes of a genome
+     *
+     * @param connections the connection genes
+     * @param nodeActivations activation function by node id, nodes without one use the NEATConfig default
+     */
+    public Network(ArrayList<GeneConnection> connections, Map<Integer, ActivationFunction> nodeActivations) {
+        this(GeneView.of(connections), nodeActivations);
+    }
+
+    /**
+     * build the evaluation form from genes read in place, see GeneView
+     *
+     * @param genes the connection genes
+     * @param nodeActivations activation function by node id, nodes without one use the NEATConfig default
+     */
+    Network(GeneView genes, Map<Integer, ActivationFunction> nodeActivations) {
+        // group the indices of the enabled connections by the node they lead into
+        HashMap<Integer, List<Integer>> incoming = new HashMap<>();
+        for (int gene = 0; gene < genes.size(); gene++) {
+            if (genes.isEnabled(gene)) {
+                incoming.computeIfAbsent(genes.getOutNode(gene), k -> new ArrayList<>()).add(gene);
+            }
+        }
+
+        // walk back from the outputs to find the nodes which contribute to them
+        HashSet<Integer> live = new HashSet<>();
+        ArrayDeque<Integer> stack = new ArrayDeque<>();
+        for (int i = 0; i < NEATConfig.OUTPUTS; i++) {
+            int outputNode = NEATConfig.INPUTS + NEATConfig.HIDDEN_NODES + i;
+            live.add(outputNode);
+            stack.push(outputNode);
+        }
+        while (!stack.isEmpty()) {
+            for (int gene : incoming.getOrDefault(stack.pop(), Collections.emptyList())) {
+                int intoNode = genes.getIntoNode(gene);
+                if (intoNode > NEATConfig.INPUTS && live.add(intoNode)) {
+                    stack.push(intoNode);
+                }
+            }
+        }
+
+        int[] computed = sortTopologically(live, incoming, genes);
+
+        HashMap<Integer, Integer> slots = new HashMap<>();
+        activations = new ActivationFunction[computed.length];
+        nodeIds = new int[NEATConfig.INPUTS + 1 + computed.length];
+        for (int i = 0; i <= NEATConfig.INPUTS; i++) {
+            nodeIds[i] = i;
+        }
+        for (int i = 0; i < computed.length; i++) {
+            nodeIds[NEATConfig.INPUTS + 1 + i] = computed[i];
+            slots.put(computed[i], NEATConfig.INPUTS + 1 + i);
+            activations[i] = nodeActivations.getOrDefault(computed[i], defaultActivation(computed[i]));
+        }
+
+        // lay out the incoming connections of each computed node next to each other
+        int connectionCount = 0;
+        for (int node : computed) {
+            connectionCount += incoming.getOrDefault(node, Collections.emptyList()).size();
+        }
+        incomingStart = new int[computed.length + 1];
+        incomingSource = new int[connectionCount];
+        weightGenes = new int[connectionCount];
+        weights = new double[connectionCount];
+        int position = 0;
+        for (int i = 0; i < computed.length; i++) {
+            incomingStart[i] = position;
+            for (int gene : incoming.getOrDefault(computed[i], Collections.emptyList())) {
+                int intoNode = genes.getIntoNode(gene);
+                incomingSource[position] = intoNode <= NEATConfig.INPUTS ? intoNode : slots.get(intoNode);
+                weightGenes[position] = gene;
+                weights[position] = genes.getWeight(gene);
+                position++;
+            }
+        }
+        incomingStart[computed.length] = position;
+
+        if (NEATConfig.FLOAT_EVALUATION) {
+            floatWeights = new float[connectionCount];
+            for (int i = 0; i < connectionCount; i++) {
+                floatWeights[i] = (float) weights[i];
+            }
+        } else {
+            floatWeights = null;
+        }
+
+        boolean backwards = false;
+        for (int i = 0; i < computed.length; i++) {
+            for (int j = incomingStart[i]; j < incomingStart[i + 1]; j++) {
+                backwards |= incomingSource[j] >= NEATConfig.INPUTS + 1 + i;
+            }
+        }
+        cyclic = backwards;
+
+        outputSlots = new int[NEATConfig.OUTPUTS];
+        for (int i = 0; i < NEATConfig.OUTPUTS; i++) {
+            outputSlots[i] = slots.get(NEATConfig.INPUTS + NEATConfig.HIDDEN_NODES + i);
+        }
+
+        topologyHash = 31 * (31 * Arrays.hashCode(nodeIds) + Arrays.hashCode(incomingSource)) + Arrays.hashCode(activations);
+    }
+
+    /**
+     * copy constructor, the topology is shared and the weights are copied
+     *
+     * @param network the network to copy
+     */
+    public Network(Network network) {
+        this.nodeIds = network.nodeIds;
+        this.incomingStart = network.incomingStart;
+        this.incomingSource = network.incomingSource;
+        this.weightGenes = network.weightGenes;
+        this.weights = network.weights.clone();
+        this.floatWeights = network.floatWeights == null ? null : network.floatWeights.clone();
+        this.activations = network.activations;
+        this.outputSlots = network.outputSlots;
+        this.cyclic = network.cyclic;
+        this.topologyHash = network.topologyHash;
+        this.sparseLayout = network.sparseLayout;
+    }
+
+    /**
+     * patch the weights in place after a weight-only change to the genes the network was built from
+     *
+     * @param connections the connection genes, in the same order as when the network was built
+     */
+    void updateWeights(ArrayList<GeneConnection> connections) {
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = connections.get(weightGenes[i]).getWeight();
+        }
+        if (floatWeights != null) {
+            for (int i = 0; i < weights.length; i++) {
+                floatWeights[i] = (float) weights[i];
+            }
+        }
+    }
+
+    /**
+     * order the computed nodes so every node comes after the nodes feeding it (Kahn's algorithm)
+     * ties are broken by node id, and a cycle is broken at its lowest node id
+     *
+     * @param live the computed nodes
+     * @param incoming indices of the enabled connections by the node they lead into
+     * @param genes the connection genes
+     * @return the computed nodes in evaluation order
+     */
+    private static int[] sortTopologically(HashSet<Integer> live, HashMap<Integer, List<Integer>> incoming,
+                                           GeneView genes) {
+        HashMap<Integer, Integer> inDegree = new HashMap<>();
+        HashMap<Integer, List<Integer>> outgoing = new HashMap<>();
+        for (int node : live) {
+            int degree = 0;
+            for (int gene : incoming.getOrDefault(node, Collections.emptyList())) {
+                int intoNode = genes.getIntoNode(gene);
+                if (intoNode > NEATConfig.INPUTS) {
+                    degree++;
+                    outgoing.computeIfAbsent(intoNode, k -> new ArrayList<>()).add(node);
+                }
+            }
+            inDegree.put(node, degree);
+        }
+
+        PriorityQueue<Integer> ready = new PriorityQueue<>();
+        TreeSet<Integer> remaining = new TreeSet<>(live);
+        for (int node : live) {
+            if (inDegree.get(node) == 0) {
+                ready.add(node);
+            }
+        }
+
+        int[] order = new int[live.size()];
+        int index = 0;
+        while (index < order.length) {
+            if (ready.isEmpty()) {
+                // every remaining node waits on another one so they are part of a cycle
+                ready.add(remaining.first());
+            }
+            int node = ready.poll();
+            if (!remaining.remove(node)) {
+                continue;
+            }
+            order[index++] = node;
+            for (int target : outgoing.getOrDefault(node, Collections.emptyList())) {
+                if (inDegree.merge(target, -1, Integer::sum) == 0 && remaining.contains(target)) {
+                    ready.add(target);
+                }
+            }
+        }
+        return order;
+    }
+
+    /**
+     * takes the inputs and returns the output
+     *
+     * @param inputs the inputs to the process
+     * @return outputs for the given input
+     */
+    public double[] evaluate(double[] inputs) {
+        double[] output = new double[NEATConfig.OUTPUTS];
+        evaluate(inputs, output, new NetworkState(this));
+        return output;
+    }
+
+    /**
+     * feed-forward evaluation, takes the inputs and writes the output without allocating
+     * nothing is carried over from earlier evaluations with the same state
+     *
+     * @param inputs the inputs to the process, INPUTS values per episode
+     * @param output array the outputs are written to, OUTPUTS values per episode
+     * @param state scratch state for this network
+     */
+    public void evaluate(double[] inputs, double[] output, NetworkState state) {
+        if (cyclic) {
+            // connections closing a cycle must read 0 rather than the previous evaluation
+            state.resetComputed();
+        }
+        step(state, inputs, output);
+    }
+
+    /**
+     * feed-forward evaluation of sparse inputs, only the inputs given are set and every other input is 0
+     * the connections leaving the inputs are pushed from the inputs given rather than pulled by every node,
+     * so the cost follows the number of inputs set rather than NEATConfig.INPUTS
+     * evaluation is in double precision whatever NEATConfig.FLOAT_EVALUATION, and leaves the input values
+     * of the state alone
+     *
+     * @param indices the inputs which are set, each at most once
+     * @param inputValues the values of those inputs
+     * @param count the number of inputs set
+     * @param output array the outputs are written to
+     * @param state scratch state for this network, of a single episode
+     */
+    public void evaluateSparse(int[] indices, double[] inputValues, int count, double[] output, NetworkState state) {
+        if (state.getNetwork() != this) {
+            throw new IllegalArgumentException("the state belongs to a different network");
+        }
+        if (state.getEpisodes() != 1) {
+            throw new IllegalArgumentException("sparse evaluation takes a state of a single episode");
+        }
+        SparseLayout layout = sparseLayout;
+        if (layout == null) {
+            // built by whichever thread gets here first, the layouts are the same
+            layout = new SparseLayout(incomingStart, incomingSource);
+            sparseLayout = layout;
+        }
+        double[] values = state.getSparseValues();
+        double[] pushed = state.getSparseSums();
+
+        int firstComputed = NEATConfig.INPUTS + 1;
+        if (cyclic) {
+            Arrays.fill(values, firstComputed, values.length, 0);
+        }
+        Arrays.fill(pushed, 0);
+        for (int k = 0; k < count; k++) {
+            int input = indices[k];
+            double value = inputValues[k];
+            for (int j = layout.inputStart[input]; j < layout.inputStart[input + 1]; j++) {
+                pushed[layout.inputTarget[j]] += value * weights[layout.inputConnection[j]];
+            }
+        }
+
+        for (int i = 0; i < incomingStart.length - 1; i++) {
+            double sum = pushed[i];
+            for (int j = layout.internalStart[i]; j < layout.internalStart[i + 1]; j++) {
+                int connection = layout.internalConnection[j];
+                sum += values[incomingSource[connection]] * weights[connection];
+            }
+            values[firstComputed + i] = activations[i].apply(sum);
+        }
+
+        for (int i = 0; i < NEATConfig.OUTPUTS; i++) {
+            output[i] = values[outputSlots[i]];
+        }
+    }
+
+    /**
+     * recurrent evaluation, advance every episode of the state by one timestep without allocating
+     * connections closing a cycle read the value their node had at the end of the previous step
+     *
+     * @param state the activation state, reset it at the start of an episode
+     * @param inputs the inputs for this timestep, INPUTS values per episode
+     * @param output array the outputs are written to, OUTPUTS values per episode
+     */
+    public void step(NetworkState state, double[] inputs, double[] output) {
+        if (state.getNetwork() != this) {
+            throw new IllegalArgumentException("the state belongs to a different network");
+        }
+        if (state.floatValues != null) {
+            stepFloat(state, inputs, output);
+            return;
+        }
+        if (state.getEpisodes() == 1) {
+            stepSingle(state.values, inputs, output);
+            return;
+        }
+
+        int episodes = state.getEpisodes();
+        double[] values = state.values;
+        double[] sums = state.sums;
+        for (int episode = 0; episode < episodes; episode++) {
+            for (int i = 0; i < NEATConfig.INPUTS; i++) {
+                values[i * episodes + episode] = inputs[episode * NEATConfig.INPUTS + i];
+            }
+        }
+
+        int firstComputed = NEATConfig.INPUTS + 1;
+        for (int i = 0; i < incomingStart.length - 1; i++) {
+            Arrays.fill(sums, 0);
+            for (int j = incomingStart[i]; j < incomingStart[i + 1]; j++) {
+                int source = incomingSource[j] * episodes;
+                double weight = weights[j];
+                for (int episode = 0; episode < episodes; episode++) {
+                    sums[episode] += values[source + episode] * weight;
+                }
+            }
+            int target = (firstComputed + i) * episodes;
+            ActivationFunction activation = activations[i];
+            for (int episode = 0; episode < episodes; episode++) {
+                values[target + episode] = activation.apply(sums[episode]);
+            }
+        }
+
+        for (int episode = 0; episode < episodes; episode++) {
+            for (int i = 0; i < NEATConfig.OUTPUTS; i++) {
+                output[episode * NEATConfig.OUTPUTS + i] = values[outputSlots[i] * episodes + episode];
+            }
+        }
+    }
+
+    /**
+     * step a single episode, values hold one value per slot
+     */
+    private void stepSingle(double[] values, double[] inputs, double[] output) {
+        System.arraycopy(inputs, 0, values, 0, NEATConfig.INPUTS);
+
+        int firstComputed = NEATConfig.INPUTS + 1;
+        for (int i = 0; i < incomingStart.length - 1; i++) {
+            double sum = 0;
+            for (int j = incomingStart[i]; j < incomingStart[i + 1]; j++) {
+                sum += values[incomingSource[j]] * weights[j];
+            }
+            values[firstComputed + i] = activations[i].apply(sum);
+        }
+
+        for (int i = 0; i < NEATConfig.OUTPUTS; i++) {
+            output[i] = values[outputSlots[i]];
+        }
+    }
+
+    /**
+     * single precision step of every episode of a state
+     */
+    private void stepFloat(NetworkState state, double[] inputs, double[] output) {
+        int episodes = state.getEpisodes();
+        float[] values = state.floatValues;
+        float[] sums = state.floatSums;
+        for (int episode = 0; episode < episodes; episode++) {
+            for (int i = 0; i < NEATConfig.INPUTS; i++) {
+                values[i * episodes + episode] = (float) inputs[episode * NEATConfig.INPUTS + i];
+            }
+        }
+
+        int firstComputed = NEATConfig.INPUTS + 1;
+        for (int i = 0; i < incomingStart.length - 1; i++) {
+            Arrays.fill(sums, 0);
+            for (int j = incomingStart[i]; j < incomingStart[i + 1]; j++) {
+                int source = incomingSource[j] * episodes;
+                float weight = floatWeights[j];
+                for (int episode = 0; episode < episodes; episode++) {
+                    sums[episode] += values[source + episode] * weight;
+                }
+            }
+            int target = (firstComputed + i) * episodes;
+            ActivationFunction activation = activations[i];
+            for (int episode = 0; episode < episodes; episode++) {
+                values[target + episode] = activation.apply(sums[episode]);
+            }
+        }
+
+        for (int episode = 0; episode < episodes; episode++) {
+            for (int i = 0; i < NEATConfig.OUTPUTS; i++) {
+                output[episode * NEATConfig.OUTPUTS + i] = values[outputSlots[i] * episodes + episode];
+            }
+        }
+    }
+
+    /**
+     * evaluate the same inputs with several sets of weights for this topology
+     *
+     * @param weightMatrix the weights by connection then weight set
+     * @param sets the number of weight sets
+     * @param values scratch values by slot then weight set
+     * @param sums scratch sums, one per weight set
+     * @param inputs the inputs to the process
+     * @param output array the outputs are written to, OUTPUTS values per weight set
+     */
+    void evaluateBatch(double[] weightMatrix, int sets, double[] values, double[] sums, double[] inputs, double[] output) {
+        int firstComputed = NEATConfig.INPUTS + 1;
+        if (cyclic) {
+            Arrays.fill(values, firstComputed * sets, values.length, 0);
+        }
+        for (int i = 0; i < NEATConfig.INPUTS; i++) {
+            Arrays.fill(values, i * sets, (i + 1) * sets, inputs[i]);
+        }
+        Arrays.fill(values, NEATConfig.INPUTS * sets, firstComputed * sets, 1);
+
+        for (int i = 0; i < incomingStart.length - 1; i++) {
+            Arrays.fill(sums, 0);
+            for (int j = incomingStart[i]; j < incomingStart[i + 1]; j++) {
+                int source = incomingSource[j] * sets;
+                int column = j * sets;
+                for (int set = 0; set < sets; set++) {
+                    sums[set] += values[source + set] * weightMatrix[column + set];
+                }
+            }
+            int target = (firstComputed + i) * sets;
+            ActivationFunction activation = activations[i];
+            for (int set = 0; set < sets; set++) {
+                values[target + set] = activation.apply(sums[set]);
+            }
+        }
+
+        for (int set = 0; set < sets; set++) {
+            for (int i = 0; i < NEATConfig.OUTPUTS; i++) {
+                output[set * NEATConfig.OUTPUTS + i] = values[outputSlots[i] * sets + set];
+            }
+        }
+    }
+
+    /**
+     * single precision evaluation of the same inputs with several sets of weights for this topology
+     *
+     * @param weightMatrix the weights by connection then weight set
+     * @param sets the number of weight sets
+     * @param values scratch values by slot then weight set
+     * @param sums scratch sums, one per weight set
+     * @param inputs the inputs to the process
+     * @param output array the outputs are written to, OUTPUTS values per weight set
+     */
+    void evaluateBatch(float[] weightMatrix, int sets, float[] values, float[] sums, double[] inputs, double[] output) {
+        int firstComputed = NEATConfig.INPUTS + 1;
+        if (cyclic) {
+            Arrays.fill(values, firstComputed * sets, values.length, 0);
+        }
+        for (int i = 0; i < NEATConfig.INPUTS; i++) {
+            Arrays.fill(values, i * sets, (i + 1) * sets, (float) inputs[i]);
+        }
+        Arrays.fill(values, NEATConfig.INPUTS * sets, firstComputed * sets, 1);
+
+        for (int i = 0; i < incomingStart.length - 1; i++) {
+            Arrays.fill(sums, 0);
+            for (int j = incomingStart[i]; j < incomingStart[i + 1]; j++) {
+                int source = incomingSource[j] * sets;
+                int column = j * sets;
+                for (int set = 0; set < sets; set++) {
+                    sums[set] += values[source + set] * weightMatrix[column + set];
+                }
+            }
+            int target = (firstComputed + i) * sets;
+            ActivationFunction activation = activations[i];
+            for (int set = 0; set < sets; set++) {
+                values[target + set] = activation.apply(sums[set]);
+            }
+        }
+
+        for (int set = 0; set < sets; set++) {
+            for (int i = 0; i < NEATConfig.OUTPUTS; i++) {
+                output[set * NEATConfig.OUTPUTS + i] = values[outputSlots[i] * sets + set];
+            }
+        }
+    }
+
+    /**
+     * decide if two networks have the same topology, so they only differ in their weights
+     *
+     * @param network the other network
+     * @return boolean indicating if the topologies are the same
+     */
+    public boolean sameTopology(Network network) {
+        if (incomingSource == network.incomingSource) {
+            return true;
+        }
+        return topologyHash == network.topologyHash
+                && Arrays.equals(nodeIds, network.nodeIds)
+                && Arrays.equals(incomingStart, network.incomingStart)
+                && Arrays.equals(incomingSource, network.incomingSource)
+                && Arrays.equals(activations, network.activations);
+    }
+
+    public int getTopologyHash() {
+        return topologyHash;
+    }
+
+    /**
+     * the activation function a node uses when the genome does not record one
+     *
+     * @param node the node id
+     * @return the activation function
+     */
+    static ActivationFunction defaultActivation(int node) {
+        if (node >= NEATConfig.INPUTS + NEATConfig.HIDDEN_NODES) {
+            return NEATConfig.OUTPUT_ACTIVATION;
+        }
+        return NEATConfig.HIDDEN_ACTIVATION;
+    }
+
+    /**
+     * @return the number of value slots, inputs and bias included
+     */
+    public int getSlotCount() {
+        return nodeIds.length;
+    }
+
+    /**
+     * @return the number of computed nodes, hidden and output
+     */
+    public int getComputedCount() {
+        return incomingStart.length - 1;
+    }
+
+    /**
+     * @return the number of enabled connections left after pruning
+     */
+    public int getConnectionCount() {
+        return weights.length;
+    }
+
+    int getNodeId(int slot) {
+        return nodeIds[slot];
+    }
+
+    int getIncomingStart(int computed) {
+        return incomingStart[computed];
+    }
+
+    int getIncomingSource(int connection) {
+        return incomingSource[connection];
+    }
+
+    double getWeight(int connection) {
+        return weights[connection];
+    }
+
+    ActivationFunction getActivation(int computed) {
+        return activations[computed];
+    }
+
+    int getOutputSlot(int output) {
+        return outputSlots[output];
+    }
+}
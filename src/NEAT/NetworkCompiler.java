@@ -0,0 +1,380 @@
+package NEAT;
+
+import NEAT.config.NEATConfig;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * compiles the network of a genome into a class whose evaluate method is the network unrolled into
+ * straight-line arithmetic, every weight becomes a constant so the JIT can keep them in registers
+ *
+ * the class is defined with MethodHandles.Lookup.defineClass and stays loaded for the lifetime of the
+ * application, so this is meant for the few champion genomes that are actually served
+ */
+public class NetworkCompiler {
+
+    private static final AtomicInteger classCounter = new AtomicInteger();
+
+    private static final String INTERFACE_NAME = "NEAT/CompiledNetwork";
+    private static final String ACTIVATION_CLASS = "NEAT/ActivationFunction";
+    private static final String CLASS_PREFIX = "NEAT/GeneratedNetwork";
+    private static final int MAX_CODE_LENGTH = 65535;
+
+    // class file constants
+    private static final int CLASS_VERSION = 52;
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+    private static final int T_DOUBLE = 7;
+
+    // opcodes
+    private static final int DCONST_0 = 0x0e;
+    private static final int DCONST_1 = 0x0f;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC_W = 0x13;
+    private static final int LDC2_W = 0x14;
+    private static final int DLOAD = 0x18;
+    private static final int ALOAD_0 = 0x2a;
+    private static final int ALOAD_1 = 0x2b;
+    private static final int ALOAD_2 = 0x2c;
+    private static final int DALOAD = 0x31;
+    private static final int DSTORE = 0x39;
+    private static final int ASTORE_2 = 0x4d;
+    private static final int DASTORE = 0x52;
+    private static final int DADD = 0x63;
+    private static final int DMUL = 0x6b;
+    private static final int ARETURN = 0xb0;
+    private static final int RETURN = 0xb1;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKESTATIC = 0xb8;
+    private static final int NEWARRAY = 0xbc;
+    private static final int WIDE = 0xc4;
+
+    /**
+     * compile the network of the given genome
+     *
+     * @param genome the genome
+     * @return the compiled network
+     */
+    public static CompiledNetwork compile(Genome genome) {
+        String className = CLASS_PREFIX + classCounter.incrementAndGet();
+        byte[] classBytes = generateClass(className, genome);
+
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            Class<?> compiledClass = lookup.defineClass(classBytes);
+            return (CompiledNetwork) lookup.findConstructor(compiledClass, MethodType.methodType(void.class)).invoke();
+        } catch (Throwable e) {
+            throw new IllegalStateException("could not define compiled network " + className, e);
+        }
+    }
+
+    /**
+     * generate the class file for the genome network
+     *
+     * @param className internal name of the class
+     * @param genome the genome
+     * @return the class file
+     */
+    private static byte[] generateClass(String className, Genome genome) {
+        ConstantPool pool = new ConstantPool();
+        int thisClass = pool.classRef(className);
+        int superClass = pool.classRef("java/lang/Object");
+        int interfaceClass = pool.classRef(INTERFACE_NAME);
+        int codeName = pool.utf8("Code");
+        int constructorName = pool.utf8("<init>");
+        int constructorDescriptor = pool.utf8("()V");
+        int evaluateName = pool.utf8("evaluate");
+        int evaluateDescriptor = pool.utf8("([D)[D");
+
+        Network network = genome.getNetwork();
+        byte[] constructorCode = generateConstructor(pool);
+        byte[] evaluateCode = generateEvaluate(pool, network);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(CLASS_VERSION);
+            pool.write(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(1);
+            out.writeShort(interfaceClass);
+
+            // no fields
+            out.writeShort(0);
+
+            // methods
+            out.writeShort(2);
+            writeMethod(out, constructorName, constructorDescriptor, codeName, 1, 1, constructorCode);
+            writeMethod(out, evaluateName, evaluateDescriptor, codeName, 6, 3 + 2 * network.getComputedCount(), evaluateCode);
+
+            // no attributes
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * generate the bytecode for the default constructor
+     *
+     * @param pool the constant pool
+     * @return the bytecode
+     */
+    private static byte[] generateConstructor(ConstantPool pool) {
+        ByteArrayOutputStream code = new ByteArrayOutputStream();
+        code.write(ALOAD_0);
+        code.write(INVOKESPECIAL);
+        writeShort(code, pool.methodRef("java/lang/Object", "<init>", "()V"));
+        code.write(RETURN);
+        return code.toByteArray();
+    }
+
+    /**
+     * generate the bytecode for evaluate, the network is evaluated in the same order as Network.evaluate
+     * each node value is kept in a local variable and each weight is a constant
+     *
+     * @param pool the constant pool
+     * @param network the evaluation form of the genome network
+     * @return the bytecode
+     */
+    private static byte[] generateEvaluate(ConstantPool pool, Network network) {
+        ByteArrayOutputStream code = new ByteArrayOutputStream();
+        int firstComputed = NEATConfig.INPUTS + 1;
+
+        // double[] output = new double[OUTPUTS]
+        pushInt(code, pool, NEATConfig.OUTPUTS);
+        code.write(NEWARRAY);
+        code.write(T_DOUBLE);
+        code.write(ASTORE_2);
+
+        for (int i = 0; i < network.getComputedCount(); i++) {
+            code.write(DCONST_0);
+            for (int j = network.getIncomingStart(i); j < network.getIncomingStart(i + 1); j++) {
+                int source = network.getIncomingSource(j);
+                if (source < NEATConfig.INPUTS) {
+                    code.write(ALOAD_1);
+                    pushInt(code, pool, source);
+                    code.write(DALOAD);
+                } else if (source == NEATConfig.INPUTS) {
+                    code.write(DCONST_1);
+                } else if (source - firstComputed < i) {
+                    writeLocal(code, DLOAD, localSlot(source));
+                } else {
+                    // the node is evaluated later so its value is still 0 and adds nothing
+                    continue;
+                }
+                code.write(LDC2_W);
+                writeShort(code, pool.doubleConstant(network.getWeight(j)));
+                code.write(DMUL);
+                code.write(DADD);
+            }
+
+            // the activation functions are small static methods which the JIT inlines
+            code.write(INVOKESTATIC);
+            writeShort(code, pool.methodRef(ACTIVATION_CLASS, network.getActivation(i).getMethodName(), "(D)D"));
+            writeLocal(code, DSTORE, localSlot(firstComputed + i));
+        }
+
+        // copy the output nodes into the output array
+        for (int i = 0; i < NEATConfig.OUTPUTS; i++) {
+            code.write(ALOAD_2);
+            pushInt(code, pool, i);
+            writeLocal(code, DLOAD, localSlot(network.getOutputSlot(i)));
+            code.write(DASTORE);
+        }
+        code.write(ALOAD_2);
+        code.write(ARETURN);
+
+        if (code.size() > MAX_CODE_LENGTH) {
+            throw new IllegalArgumentException("network is too large to compile: " + code.size() + " bytes of code");
+        }
+        return code.toByteArray();
+    }
+
+    /**
+     * local variable holding the value of a computed slot, after this, inputs and output
+     *
+     * @param slot the network slot
+     * @return the local variable index
+     */
+    private static int localSlot(int slot) {
+        return 3 + 2 * (slot - NEATConfig.INPUTS - 1);
+    }
+
+    private static void writeMethod(DataOutputStream out, int name, int descriptor, int codeName,
+                                    int maxStack, int maxLocals, byte[] code) throws IOException {
+        out.writeShort(ACC_PUBLIC);
+        out.writeShort(name);
+        out.writeShort(descriptor);
+        out.writeShort(1);
+        out.writeShort(codeName);
+        out.writeInt(12 + code.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        // no exception table and no attributes
+        out.writeShort(0);
+        out.writeShort(0);
+    }
+
+    private static void writeLocal(ByteArrayOutputStream code, int opcode, int slot) {
+        if (slot > 255) {
+            code.write(WIDE);
+            code.write(opcode);
+            writeShort(code, slot);
+        } else {
+            code.write(opcode);
+            code.write(slot);
+        }
+    }
+
+    private static void pushInt(ByteArrayOutputStream code, ConstantPool pool, int value) {
+        if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            code.write(BIPUSH);
+            code.write(value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            code.write(SIPUSH);
+            writeShort(code, value);
+        } else {
+            code.write(LDC_W);
+            writeShort(code, pool.intConstant(value));
+        }
+    }
+
+    private static void writeShort(ByteArrayOutputStream code, int value) {
+        code.write(value >>> 8);
+        code.write(value);
+    }
+
+    /**
+     * constant pool of the generated class, entries are shared where possible
+     */
+    private static class ConstantPool {
+        private static final int CONSTANT_UTF8 = 1;
+        private static final int CONSTANT_INTEGER = 3;
+        private static final int CONSTANT_DOUBLE = 6;
+        private static final int CONSTANT_CLASS = 7;
+        private static final int CONSTANT_METHODREF = 10;
+        private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final HashMap<String, Integer> entries = new HashMap<>();
+        private int nextIndex = 1;
+
+        int utf8(String value) {
+            Integer index = entries.get("U" + value);
+            if (index == null) {
+                index = add("U" + value, 1);
+                write(() -> {
+                    out.writeByte(CONSTANT_UTF8);
+                    out.writeUTF(value);
+                });
+            }
+            return index;
+        }
+
+        int classRef(String name) {
+            Integer index = entries.get("C" + name);
+            if (index == null) {
+                int nameIndex = utf8(name);
+                index = add("C" + name, 1);
+                write(() -> {
+                    out.writeByte(CONSTANT_CLASS);
+                    out.writeShort(nameIndex);
+                });
+            }
+            return index;
+        }
+
+        int methodRef(String owner, String name, String descriptor) {
+            String key = "M" + owner + "." + name + descriptor;
+            Integer index = entries.get(key);
+            if (index == null) {
+                int ownerIndex = classRef(owner);
+                int nameIndex = utf8(name);
+                int descriptorIndex = utf8(descriptor);
+                int nameAndType = add("N" + name + descriptor, 1);
+                write(() -> {
+                    out.writeByte(CONSTANT_NAME_AND_TYPE);
+                    out.writeShort(nameIndex);
+                    out.writeShort(descriptorIndex);
+                });
+                index = add(key, 1);
+                write(() -> {
+                    out.writeByte(CONSTANT_METHODREF);
+                    out.writeShort(ownerIndex);
+                    out.writeShort(nameAndType);
+                });
+            }
+            return index;
+        }
+
+        int intConstant(int value) {
+            Integer index = entries.get("I" + value);
+            if (index == null) {
+                index = add("I" + value, 1);
+                write(() -> {
+                    out.writeByte(CONSTANT_INTEGER);
+                    out.writeInt(value);
+                });
+            }
+            return index;
+        }
+
+        int doubleConstant(double value) {
+            // keyed on the raw bits so -0.0 and NaN payloads are kept exactly
+            String key = "D" + Double.doubleToRawLongBits(value);
+            Integer index = entries.get(key);
+            if (index == null) {
+                // doubles take up two entries in the pool
+                index = add(key, 2);
+                write(() -> {
+                    out.writeByte(CONSTANT_DOUBLE);
+                    out.writeDouble(value);
+                });
+            }
+            return index;
+        }
+
+        void write(DataOutputStream classFile) throws IOException {
+            if (nextIndex > 0xFFFF) {
+                throw new IllegalArgumentException("network is too large to compile: " + nextIndex + " constants");
+            }
+            classFile.writeShort(nextIndex);
+            classFile.write(bytes.toByteArray());
+        }
+
+        private int add(String key, int size) {
+            int index = nextIndex;
+            entries.put(key, index);
+            nextIndex += size;
+            return index;
+        }
+
+        private void write(PoolWriter writer) {
+            try {
+                writer.write();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private interface PoolWriter {
+            void write() throws IOException;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package NEAT;
+
+import NEAT.config.NEATConfig;
+
+import java.util.Arrays;
+
+/**
+ * activation state of a network, holds the value of every slot for one or more independent episodes
+ * keep one per episode (or batch of episodes) and per thread, stepping it does not allocate
+ *
+ * values are laid out slot by slot with the episodes of a slot next to each other
+ * with NEATConfig.FLOAT_EVALUATION set the values are held in single precision
+ */
+public class NetworkState {
+    private final Network network;
+    private final int episodes;
+    final double[] values;
+    final double[] sums;
+    final float[] floatValues;
+    final float[] floatSums;
+    private double[] sparseValues;
+    private double[] sparseSums;
+
+    /**
+     * create the state for a single episode
+     *
+     * @param network the network the state belongs to
+     */
+    public NetworkState(Network network) {
+        this(network, 1);
+    }
+
+    /**
+     * create the state for a batch of episodes which are stepped together
+     *
+     * @param network the network the state belongs to
+     * @param episodes the number of episodes
+     */
+    public NetworkState(Network network, int episodes) {
+        if (episodes < 1) {
+            throw new IllegalArgumentException("episodes must be at least 1: " + episodes);
+        }
+        this.network = network;
+        this.episodes = episodes;
+        if (NEATConfig.FLOAT_EVALUATION) {
+            this.values = null;
+            this.sums = null;
+            this.floatValues = new float[network.getSlotCount() * episodes];
+            this.floatSums = new float[episodes];
+        } else {
+            this.values = new double[network.getSlotCount() * episodes];
+            this.sums = new double[episodes];
+            this.floatValues = null;
+            this.floatSums = null;
+        }
+        reset();
+    }
+
+    /**
+     * reset all episodes to the start state
+     */
+    public void reset() {
+        if (floatValues != null) {
+            Arrays.fill(floatValues, 0);
+            Arrays.fill(floatValues, NEATConfig.INPUTS * episodes, (NEATConfig.INPUTS + 1) * episodes, 1);
+            return;
+        }
+        Arrays.fill(values, 0);
+        Arrays.fill(values, NEATConfig.INPUTS * episodes, (NEATConfig.INPUTS + 1) * episodes, 1);
+    }
+
+    /**
+     * reset a single episode to the start state
+     *
+     * @param episode the episode
+     */
+    public void reset(int episode) {
+        for (int slot = 0; slot < network.getSlotCount(); slot++) {
+            if (floatValues != null) {
+                floatValues[slot * episodes + episode] = slot == NEATConfig.INPUTS ? 1 : 0;
+            } else {
+                values[slot * episodes + episode] = slot == NEATConfig.INPUTS ? 1 : 0;
+            }
+        }
+    }
+
+    /**
+     * reset the computed nodes of all episodes, inputs and bias are left alone
+     */
+    void resetComputed() {
+        if (floatValues != null) {
+            Arrays.fill(floatValues, (NEATConfig.INPUTS + 1) * episodes, floatValues.length, 0);
+            return;
+        }
+        Arrays.fill(values, (NEATConfig.INPUTS + 1) * episodes, values.length, 0);
+    }
+
+    /**
+     * get the current value of a node
+     *
+     * @param slot the network slot
+     * @param episode the episode
+     * @return the value
+     */
+    public double getValue(int slot, int episode) {
+        if (floatValues != null) {
+            return floatValues[slot * episodes + episode];
+        }
+        return values[slot * episodes + episode];
+    }
+
+    /**
+     * @return double values by slot for Network.evaluateSparse, created on first use with the bias set
+     */
+    double[] getSparseValues() {
+        if (sparseValues == null) {
+            sparseValues = new double[network.getSlotCount()];
+            sparseValues[NEATConfig.INPUTS] = 1;
+        }
+        return sparseValues;
+    }
+
+    /**
+     * @return sums pushed from the inputs by computed node for Network.evaluateSparse, created on first use
+     */
+    double[] getSparseSums() {
+        if (sparseSums == null) {
+            sparseSums = new double[network.getComputedCount()];
+        }
+        return sparseSums;
+    }
+
+    public Network getNetwork() {
+        return network;
+    }
+
+    public int getEpisodes() {
+        return episodes;
+    }
+}
@@ -0,0 +1,100 @@
+package NEAT;
+
+import NEAT.config.NEATConfig;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * novelty search on top of another environment
+ * the environment assigns fitness and a behaviour descriptor to every genome, the novelty of a genome is
+ * its mean distance to the NEATConfig.NOVELTY_NEIGHBOURS nearest behaviours in the archive and the
+ * current population, and the fitness becomes a blend of the two, each normalised over the population
+ *
+ * the nearest neighbours come from k-d trees so scoring stays sub-linear in the size of the archive and
+ * the queries run in parallel, once every genome is scored the most novel behaviours of the generation
+ * are added to the archive, and after ranking the points of a genome hold its blended fitness
+ */
+public class NoveltyEnvironment implements Environment {
+    private final Environment environment;
+    private final BehaviourArchive archive;
+
+    /**
+     * @param environment the environment which sets fitness and behaviour
+     * @param dimensions the number of values in a behaviour descriptor
+     */
+    public NoveltyEnvironment(Environment environment, int dimensions) {
+        this.environment = environment;
+        this.archive = new BehaviourArchive(dimensions);
+    }
+
+    @Override
+    public void evaluateFitness(ArrayList<Genome> population) {
+        GenePool.assignFitness(environment, population);
+
+        BehaviourArchive current = new BehaviourArchive(archive.getDimensions());
+        for (Genome genome : population) {
+            if (genome.getBehaviour() == null) {
+                throw new IllegalStateException("the environment did not set the behaviour of a genome");
+            }
+            current.add(genome.getBehaviour());
+        }
+
+        // each genome finds itself at distance 0 in the population, so look for one more neighbour and skip it
+        double[] novelty = new double[population.size()];
+        IntStream.range(0, population.size()).parallel().forEach(i -> {
+            double[] behaviour = population.get(i).getBehaviour();
+            double[] nearest = new double[NEATConfig.NOVELTY_NEIGHBOURS + 1];
+            int count = current.nearest(behaviour, nearest, 0);
+            count = archive.nearest(behaviour, nearest, count);
+            double total = 0;
+            for (int j = 1; j < count; j++) {
+                total += Math.sqrt(nearest[j]);
+            }
+            novelty[i] = count > 1 ? total / (count - 1) : 0;
+        });
+
+        double[] fitness = new double[population.size()];
+        for (int i = 0; i < fitness.length; i++) {
+            fitness[i] = population.get(i).getFitness();
+        }
+        normalise(fitness);
+        double[] normalisedNovelty = novelty.clone();
+        normalise(normalisedNovelty);
+        for (int i = 0; i < fitness.length; i++) {
+            population.get(i).setFitness(NEATConfig.NOVELTY_WEIGHT * normalisedNovelty[i] + (1 - NEATConfig.NOVELTY_WEIGHT) * fitness[i]);
+        }
+
+        // archive the most novel behaviours
+        Integer[] order = new Integer[population.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(novelty[b], novelty[a]));
+        for (int i = 0; i < Math.min(NEATConfig.NOVELTY_ARCHIVE_ADDITIONS, order.length); i++) {
+            archive.add(population.get(order[i]).getBehaviour());
+        }
+    }
+
+    public BehaviourArchive getArchive() {
+        return archive;
+    }
+
+    /**
+     * scale values to between 0 and 1
+     *
+     * @param values the values
+     */
+    private static void normalise(double[] values) {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (double value : values) {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        for (int i = 0; i < values.length; i++) {
+            values[i] = max > min ? (values[i] - min) / (max - min) : 0;
+        }
+    }
+}
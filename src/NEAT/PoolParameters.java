@@ -0,0 +1,132 @@
+package NEAT;
+
+import NEAT.config.NEATConfig;
+
+/**
+ * parameters which can differ between gene pools in the same JVM, see SweepRunner
+ * each starts at its NEATConfig value, the mutation chances are the starting rates of the initial
+ * genomes, which then drift with mutation as usual
+ */
+public class PoolParameters {
+    private int population = NEATConfig.POPULATION;
+    private float compatibilityThreshold = NEATConfig.COMPATIBILITY_THRESHOLD;
+    private float steps = NEATConfig.STEPS;
+    private float perturbChance = NEATConfig.PERTURB_CHANCE;
+    private float weightChance = NEATConfig.WEIGHT_CHANCE;
+    private float weightMutationChance = NEATConfig.WEIGHT_MUTATION_CHANCE;
+    private float nodeMutationChance = NEATConfig.NODE_MUTATION_CHANCE;
+    private float connectionMutationChance = NEATConfig.CONNECTION_MUTATION_CHANCE;
+    private float biasConnectionMutationChance = NEATConfig.BIAS_CONNECTION_MUTATION_CHANCE;
+    private float disableMutationChance = NEATConfig.DISABLE_MUTATION_CHANCE;
+    private float enableMutationChance = NEATConfig.ENABLE_MUTATION_CHANCE;
+
+    public PoolParameters() {
+    }
+
+    /**
+     * copy constructor
+     *
+     * @param parameters the parameters to copy
+     */
+    public PoolParameters(PoolParameters parameters) {
+        this.population = parameters.population;
+        this.compatibilityThreshold = parameters.compatibilityThreshold;
+        this.steps = parameters.steps;
+        this.perturbChance = parameters.perturbChance;
+        this.weightChance = parameters.weightChance;
+        this.weightMutationChance = parameters.weightMutationChance;
+        this.nodeMutationChance = parameters.nodeMutationChance;
+        this.connectionMutationChance = parameters.connectionMutationChance;
+        this.biasConnectionMutationChance = parameters.biasConnectionMutationChance;
+        this.disableMutationChance = parameters.disableMutationChance;
+        this.enableMutationChance = parameters.enableMutationChance;
+    }
+
+    public int getPopulation() {
+        return population;
+    }
+
+    public void setPopulation(int population) {
+        this.population = population;
+    }
+
+    public float getCompatibilityThreshold() {
+        return compatibilityThreshold;
+    }
+
+    public void setCompatibilityThreshold(float compatibilityThreshold) {
+        this.compatibilityThreshold = compatibilityThreshold;
+    }
+
+    public float getSteps() {
+        return steps;
+    }
+
+    public void setSteps(float steps) {
+        this.steps = steps;
+    }
+
+    public float getPerturbChance() {
+        return perturbChance;
+    }
+
+    public void setPerturbChance(float perturbChance) {
+        this.perturbChance = perturbChance;
+    }
+
+    public float getWeightChance() {
+        return weightChance;
+    }
+
+    public void setWeightChance(float weightChance) {
+        this.weightChance = weightChance;
+    }
+
+    public float getWeightMutationChance() {
+        return weightMutationChance;
+    }
+
+    public void setWeightMutationChance(float weightMutationChance) {
+        this.weightMutationChance = weightMutationChance;
+    }
+
+    public float getNodeMutationChance() {
+        return nodeMutationChance;
+    }
+
+    public void setNodeMutationChance(float nodeMutationChance) {
+        this.nodeMutationChance = nodeMutationChance;
+    }
+
+    public float getConnectionMutationChance() {
+        return connectionMutationChance;
+    }
+
+    public void setConnectionMutationChance(float connectionMutationChance) {
+        this.connectionMutationChance = connectionMutationChance;
+    }
+
+    public float getBiasConnectionMutationChance() {
+        return biasConnectionMutationChance;
+    }
+
+    public void setBiasConnectionMutationChance(float biasConnectionMutationChance) {
+        this.biasConnectionMutationChance = biasConnectionMutationChance;
+    }
+
+    public float getDisableMutationChance() {
+        return disableMutationChance;
+    }
+
+    public void setDisableMutationChance(float disableMutationChance) {
+        this.disableMutationChance = disableMutationChance;
+    }
+
+    public float getEnableMutationChance() {
+        return enableMutationChance;
+    }
+
+    public void setEnableMutationChance(float enableMutationChance) {
+        this.enableMutationChance = enableMutationChance;
+    }
+}
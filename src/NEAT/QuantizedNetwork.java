@@ -0,0 +1,348 @@
+package NEAT;
+
+import NEAT.config.NEATConfig;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * fixed point inference form of a genome network for serving, see Genome.quantize
+ *
+ * node values are int16 with a scale per slot and weights are int8 with a scale per computed node, the
+ * scale of the source value is folded into each weight so a node sums plain integer products
+ * bounded activations are interpolated from small int16 tables which stay in L1, relu is a multiply and shift
+ *
+ * the scales are calibrated by evaluating the network on sample inputs, and the error against the double
+ * precision network on those inputs is measured when quantizing
+ * not thread safe, each thread should use its own copy
+ */
+public class QuantizedNetwork {
+    private static final int VALUE_MAX = Short.MAX_VALUE;
+    private static final int WEIGHT_MAX = Byte.MAX_VALUE;
+    private static final int TABLE_HALF = 512;
+    private static final int FRACTION_BITS = 8;
+    private static final int MULTIPLIER_SHIFT = 24;
+
+    // table range of the sum for each function, the functions are within 5e-6 of their limits outside it
+    private static final double SIGMOID_RANGE = 2.5;
+    private static final double TANH_RANGE = 2.5 * 4.9 / 2;
+
+    private static final short[] SIGMOID_TABLE = table(ActivationFunction.STEEPENED_SIGMOID, SIGMOID_RANGE);
+    private static final short[] TANH_TABLE = table(ActivationFunction.FAST_TANH, TANH_RANGE);
+
+    private final int[] incomingStart;
+    private final int[] incomingSource;
+    private final byte[] weights;
+    private final ActivationFunction[] activations;
+    private final long[] multipliers;
+    private final double[] inputScales;
+    private final double[] outputScales;
+    private final int[] outputSlots;
+    private final short[] values;
+    private double maxError;
+    private double meanError;
+
+    private QuantizedNetwork(int[] incomingStart, int[] incomingSource, byte[] weights, ActivationFunction[] activations,
+                             long[] multipliers, double[] inputScales, double[] outputScales, int[] outputSlots) {
+        this.incomingStart = incomingStart;
+        this.incomingSource = incomingSource;
+        this.weights = weights;
+        this.activations = activations;
+        this.multipliers = multipliers;
+        this.inputScales = inputScales;
+        this.outputScales = outputScales;
+        this.outputSlots = outputSlots;
+        this.values = new short[NEATConfig.INPUTS + 1 + activations.length];
+    }
+
+    /**
+     * quantize the network of a genome
+     *
+     * @param genome the genome
+     * @param calibrationInputs representative inputs used to pick the scales and measure the error
+     * @return the quantized network
+     */
+    static QuantizedNetwork quantize(Genome genome, double[][] calibrationInputs) {
+        if (calibrationInputs.length == 0) {
+            throw new IllegalArgumentException("at least one calibration input is needed");
+        }
+        Network network = genome.getNetwork();
+        int computedCount = network.getComputedCount();
+        int firstComputed = NEATConfig.INPUTS + 1;
+
+        // largest magnitude of every slot over the calibration inputs
+        double[] maxValues = new double[network.getSlotCount()];
+        NetworkState state = new NetworkState(network);
+        double[] output = new double[NEATConfig.OUTPUTS];
+        for (double[] inputs : calibrationInputs) {
+            network.evaluate(inputs, output, state);
+            for (int slot = 0; slot < maxValues.length; slot++) {
+                maxValues[slot] = Math.max(maxValues[slot], Math.abs(state.getValue(slot, 0)));
+            }
+        }
+
+        // value scale of every slot, bounded activations use their full range
+        double[] valueScales = new double[network.getSlotCount()];
+        for (int slot = 0; slot < valueScales.length; slot++) {
+            double max = slot == NEATConfig.INPUTS ? 1 : maxValues[slot];
+            if (slot >= firstComputed && network.getActivation(slot - firstComputed) != ActivationFunction.RELU) {
+                max = 1;
+            }
+            valueScales[slot] = Math.max(max, Double.MIN_NORMAL) / VALUE_MAX;
+        }
+
+        // weights with the source scale folded in, quantized with a scale per computed node
+        ActivationFunction[] activations = new ActivationFunction[computedCount];
+        int[] incomingStart = new int[computedCount + 1];
+        int[] incomingSource = new int[network.getConnectionCount()];
+        byte[] weights = new byte[network.getConnectionCount()];
+        long[] multipliers = new long[computedCount];
+        for (int i = 0; i < computedCount; i++) {
+            int start = network.getIncomingStart(i);
+            int end = network.getIncomingStart(i + 1);
+            incomingStart[i] = start;
+            activations[i] = network.getActivation(i);
+
+            double maxWeight = 0;
+            for (int j = start; j < end; j++) {
+                maxWeight = Math.max(maxWeight, Math.abs(network.getWeight(j) * valueScales[network.getIncomingSource(j)]));
+            }
+            double weightScale = Math.max(maxWeight, Double.MIN_NORMAL) / WEIGHT_MAX;
+            for (int j = start; j < end; j++) {
+                incomingSource[j] = network.getIncomingSource(j);
+                weights[j] = (byte) Math.round(network.getWeight(j) * valueScales[incomingSource[j]] / weightScale);
+            }
+
+            // turns the integer sum into a table position with FRACTION_BITS, or the relu value
+            double factor;
+            switch (activations[i]) {
+                case RELU:
+                    factor = weightScale / valueScales[firstComputed + i];
+                    break;
+                case FAST_TANH:
+                    factor = weightScale * TABLE_HALF / TANH_RANGE * (1 << FRACTION_BITS);
+                    break;
+                default:
+                    factor = weightScale * TABLE_HALF / SIGMOID_RANGE * (1 << FRACTION_BITS);
+            }
+            multipliers[i] = Math.round(factor * (1L << MULTIPLIER_SHIFT));
+        }
+        incomingStart[computedCount] = network.getConnectionCount();
+
+        double[] inputScales = new double[NEATConfig.INPUTS];
+        System.arraycopy(valueScales, 0, inputScales, 0, NEATConfig.INPUTS);
+        int[] outputSlots = new int[NEATConfig.OUTPUTS];
+        double[] outputScales = new double[NEATConfig.OUTPUTS];
+        for (int i = 0; i < NEATConfig.OUTPUTS; i++) {
+            outputSlots[i] = network.getOutputSlot(i);
+            outputScales[i] = valueScales[outputSlots[i]];
+        }
+
+        QuantizedNetwork quantized = new QuantizedNetwork(incomingStart, incomingSource, weights, activations,
+                multipliers, inputScales, outputScales, outputSlots);
+        quantized.measureError(genome, calibrationInputs);
+        return quantized;
+    }
+
+    /**
+     * takes the inputs and writes the output without allocating
+     *
+     * @param inputs the inputs to the process
+     * @param output array the outputs are written to
+     */
+    public void evaluate(double[] inputs, double[] output) {
+        for (int i = 0; i < NEATConfig.INPUTS; i++) {
+            values[i] = (short) Math.max(-VALUE_MAX, Math.min(VALUE_MAX, Math.round(inputs[i] / inputScales[i])));
+        }
+        values[NEATConfig.INPUTS] = VALUE_MAX;
+
+        // connections closing a cycle read 0, like a feed-forward Network evaluation
+        int firstComputed = NEATConfig.INPUTS + 1;
+        for (int slot = firstComputed; slot < values.length; slot++) {
+            values[slot] = 0;
+        }
+
+        for (int i = 0; i < activations.length; i++) {
+            long sum = 0;
+            for (int j = incomingStart[i]; j < incomingStart[i + 1]; j++) {
+                sum += values[incomingSource[j]] * weights[j];
+            }
+            long scaled = (sum * multipliers[i]) >> MULTIPLIER_SHIFT;
+            switch (activations[i]) {
+                case RELU:
+                    values[firstComputed + i] = (short) Math.max(0, Math.min(VALUE_MAX, scaled));
+                    break;
+                case FAST_TANH:
+                    values[firstComputed + i] = lookup(TANH_TABLE, scaled);
+                    break;
+                default:
+                    values[firstComputed + i] = lookup(SIGMOID_TABLE, scaled);
+            }
+        }
+
+        for (int i = 0; i < NEATConfig.OUTPUTS; i++) {
+            output[i] = values[outputSlots[i]] * outputScales[i];
+        }
+    }
+
+    /**
+     * takes the inputs and returns the output
+     *
+     * @param inputs the inputs to the process
+     * @return outputs for the given input
+     */
+    public double[] evaluate(double[] inputs) {
+        double[] output = new double[NEATConfig.OUTPUTS];
+        evaluate(inputs, output);
+        return output;
+    }
+
+    /**
+     * largest absolute difference from the double precision network over the calibration inputs
+     *
+     * @return the error
+     */
+    public double getMaxError() {
+        return maxError;
+    }
+
+    /**
+     * mean absolute difference from the double precision network over the calibration inputs
+     *
+     * @return the error
+     */
+    public double getMeanError() {
+        return meanError;
+    }
+
+    /**
+     * write the quantized network for a serving process
+     *
+     * @param out the output to write to
+     * @throws IOException if writing fails
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(activations.length);
+        out.writeInt(weights.length);
+        for (int i = 0; i < activations.length; i++) {
+            out.writeInt(incomingStart[i + 1] - incomingStart[i]);
+            out.writeByte(activations[i].ordinal());
+            out.writeLong(multipliers[i]);
+        }
+        for (int j = 0; j < weights.length; j++) {
+            out.writeInt(incomingSource[j]);
+            out.writeByte(weights[j]);
+        }
+        for (double scale : inputScales) {
+            out.writeDouble(scale);
+        }
+        for (int i = 0; i < NEATConfig.OUTPUTS; i++) {
+            out.writeInt(outputSlots[i]);
+            out.writeDouble(outputScales[i]);
+        }
+        out.writeDouble(maxError);
+        out.writeDouble(meanError);
+    }
+
+    /**
+     * read a quantized network written by writeTo
+     *
+     * @param in the input to read from
+     * @return the quantized network
+     * @throws IOException if reading fails
+     */
+    public static QuantizedNetwork readFrom(DataInput in) throws IOException {
+        int computedCount = in.readInt();
+        int connectionCount = in.readInt();
+        int[] incomingStart = new int[computedCount + 1];
+        ActivationFunction[] activations = new ActivationFunction[computedCount];
+        long[] multipliers = new long[computedCount];
+        for (int i = 0; i < computedCount; i++) {
+            incomingStart[i + 1] = incomingStart[i] + in.readInt();
+            activations[i] = ActivationFunction.values()[in.readByte()];
+            multipliers[i] = in.readLong();
+        }
+        int[] incomingSource = new int[connectionCount];
+        byte[] weights = new byte[connectionCount];
+        for (int j = 0; j < connectionCount; j++) {
+            incomingSource[j] = in.readInt();
+            weights[j] = in.readByte();
+        }
+        double[] inputScales = new double[NEATConfig.INPUTS];
+        for (int i = 0; i < inputScales.length; i++) {
+            inputScales[i] = in.readDouble();
+        }
+        int[] outputSlots = new int[NEATConfig.OUTPUTS];
+        double[] outputScales = new double[NEATConfig.OUTPUTS];
+        for (int i = 0; i < NEATConfig.OUTPUTS; i++) {
+            outputSlots[i] = in.readInt();
+            outputScales[i] = in.readDouble();
+        }
+
+        QuantizedNetwork network = new QuantizedNetwork(incomingStart, incomingSource, weights, activations,
+                multipliers, inputScales, outputScales, outputSlots);
+        network.maxError = in.readDouble();
+        network.meanError = in.readDouble();
+        return network;
+    }
+
+    /**
+     * compare with the double precision network of the genome
+     *
+     * @param genome the genome
+     * @param calibrationInputs the inputs to compare on
+     */
+    private void measureError(Genome genome, double[][] calibrationInputs) {
+        double[] expected = new double[NEATConfig.OUTPUTS];
+        double[] actual = new double[NEATConfig.OUTPUTS];
+        double total = 0;
+        for (double[] inputs : calibrationInputs) {
+            genome.evaluateNetwork(inputs, expected);
+            evaluate(inputs, actual);
+            for (int i = 0; i < NEATConfig.OUTPUTS; i++) {
+                double error = Math.abs(expected[i] - actual[i]);
+                maxError = Math.max(maxError, error);
+                total += error;
+            }
+        }
+        meanError = total / (calibrationInputs.length * NEATConfig.OUTPUTS);
+    }
+
+    /**
+     * interpolate an activation table
+     *
+     * @param table the table
+     * @param position position in the table relative to its middle, with FRACTION_BITS
+     * @return the value
+     */
+    private static short lookup(short[] table, long position) {
+        long shifted = position + ((long) TABLE_HALF << FRACTION_BITS);
+        if (shifted <= 0) {
+            return table[0];
+        }
+        if (shifted >= (long) (2 * TABLE_HALF) << FRACTION_BITS) {
+            return table[2 * TABLE_HALF];
+        }
+        int index = (int) (shifted >> FRACTION_BITS);
+        int fraction = (int) shifted & ((1 << FRACTION_BITS) - 1);
+        return (short) (table[index] + ((table[index + 1] - table[index]) * fraction >> FRACTION_BITS));
+    }
+
+    /**
+     * tabulate an activation function over [-range, range] in values scaled to VALUE_MAX
+     *
+     * @param function the function
+     * @param range the range of the sum
+     * @return the table
+     */
+    private static short[] table(ActivationFunction function, double range) {
+        short[] table = new short[2 * TABLE_HALF + 1];
+        for (int i = 0; i < table.length; i++) {
+            double x = (i - TABLE_HALF) * range / TABLE_HALF;
+            double exact = function == ActivationFunction.FAST_TANH ? Math.tanh(x) : ActivationFunction.steepenedSigmoid(x);
+            table[i] = (short) Math.round(exact * VALUE_MAX);
+        }
+        return table;
+    }
+}
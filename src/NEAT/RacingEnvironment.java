@@ -0,0 +1,119 @@
+package NEAT;
+
+import NEAT.config.NEATConfig;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * evaluates genomes by racing them over a sample environment
+ * every genome is scored on progressively larger chunks of samples and a genome is stopped as soon as
+ * the upper Hoeffding bound of its final score can not reach the lower bound of the genome which would
+ * be the last survivor of Species.killWeakGenomes, the gene pool races each species separately
+ *
+ * stopped genomes get the fitness of their mean score extrapolated to every sample, lowered if needed so
+ * they rank below every genome which was scored on every sample while keeping their order among themselves
+ * the bounds assume the samples are in random order
+ */
+public class RacingEnvironment implements Environment {
+    private final SampleEnvironment environment;
+    private long samplesScored = 0;
+
+    /**
+     * @param environment the environment which scores the samples
+     */
+    public RacingEnvironment(SampleEnvironment environment) {
+        this.environment = environment;
+    }
+
+    @Override
+    public void evaluateFitness(ArrayList<Genome> population) {
+        int size = population.size();
+        int survivors = (int) Math.ceil(size * NEATConfig.SURVIVAL_RATE);
+        long sampleCount = environment.getSampleCount();
+        double minScore = environment.getMinSampleScore();
+        double maxScore = environment.getMaxSampleScore();
+
+        double[] totals = new double[size];
+        long[] scored = new long[size];
+        boolean[] racing = new boolean[size];
+        Arrays.fill(racing, true);
+        int racingCount = size;
+
+        long from = 0;
+        long chunk = NEATConfig.RACING_INITIAL_SAMPLES;
+        double[] lowerBounds = new double[size];
+        double[] upperBounds = new double[size];
+        while (from < sampleCount) {
+            long to = Math.min(sampleCount, from + chunk);
+            for (int i = 0; i < size; i++) {
+                if (racing[i]) {
+                    totals[i] += environment.scoreSamples(population.get(i), from, to);
+                    scored[i] = to;
+                    samplesScored += to - from;
+                }
+            }
+            from = to;
+            chunk *= 2;
+
+            if (from >= sampleCount || racingCount <= survivors) {
+                continue;
+            }
+
+            // bounds on the mean score over all samples, the genomes already stopped keep theirs
+            double halfWidth = (maxScore - minScore) * Math.sqrt(Math.log(2 / NEATConfig.RACING_CONFIDENCE) / (2 * from));
+            for (int i = 0; i < size; i++) {
+                if (racing[i]) {
+                    double mean = totals[i] / from;
+                    lowerBounds[i] = Math.max(minScore, mean - halfWidth);
+                    upperBounds[i] = Math.min(maxScore, mean + halfWidth);
+                }
+            }
+
+            // the cutoff is the lower bound of the last genome which would survive
+            double[] sortedLowerBounds = lowerBounds.clone();
+            Arrays.sort(sortedLowerBounds);
+            double cutoff = sortedLowerBounds[size - survivors];
+
+            for (int i = 0; i < size && racingCount > survivors; i++) {
+                if (racing[i] && upperBounds[i] < cutoff) {
+                    racing[i] = false;
+                    racingCount--;
+                }
+            }
+        }
+
+        double[] fitness = new double[size];
+        double lowestCompleted = Double.POSITIVE_INFINITY;
+        double highestStopped = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < size; i++) {
+            if (scored[i] == sampleCount) {
+                fitness[i] = environment.fitness(totals[i]);
+                lowestCompleted = Math.min(lowestCompleted, fitness[i]);
+            } else {
+                fitness[i] = environment.fitness(totals[i] / scored[i] * sampleCount);
+                highestStopped = Math.max(highestStopped, fitness[i]);
+            }
+        }
+
+        // an extrapolated mean can beat a genome scored on every sample, move the stopped genomes below them
+        double shift = Math.max(0, highestStopped - lowestCompleted);
+        for (int i = 0; i < size; i++) {
+            if (scored[i] != sampleCount) {
+                fitness[i] = Math.min(fitness[i] - shift, Math.nextDown(lowestCompleted));
+            }
+            population.get(i).setFitness(fitness[i]);
+        }
+    }
+
+    /**
+     * @return the number of samples scored so far across all genomes
+     */
+    public long getSamplesScored() {
+        return samplesScored;
+    }
+
+    public SampleEnvironment getEnvironment() {
+        return environment;
+    }
+}
@@ -0,0 +1,58 @@
+package NEAT;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * an environment whose fitness is built from a score per sample, such as a row of a dataset
+ * lets evaluators score a genome on part of the samples, eg RacingEnvironment
+ */
+public interface SampleEnvironment extends Environment {
+
+    /**
+     * @return the number of samples
+     */
+    long getSampleCount();
+
+    /**
+     * @return the lowest score a single sample can give
+     */
+    double getMinSampleScore();
+
+    /**
+     * @return the highest score a single sample can give
+     */
+    double getMaxSampleScore();
+
+    /**
+     * score a genome on a range of samples
+     *
+     * @param genome the genome
+     * @param from the first sample
+     * @param to the sample after the last one
+     * @return the total score of the samples
+     */
+    double scoreSamples(Genome genome, long from, long to);
+
+    /**
+     * score a genome on a range of samples split across the threads of the common fork join pool, for a
+     * small population on many samples, scoreSamples must be safe to call from several threads at once
+     *
+     * @param genome the genome
+     * @param from the first sample
+     * @param to the sample after the last one
+     * @return the total score of the samples
+     */
+    default double scoreSamplesInParallel(Genome genome, long from, long to) {
+        // build the network before the threads race to
+        genome.getNetwork();
+        return ForkJoinPool.commonPool().invoke(new SampleScoringTask(this, genome, from, to));
+    }
+
+    /**
+     * turn the total score of all samples into a fitness, must not decrease as the total increases
+     *
+     * @param total the total score
+     * @return the fitness
+     */
+    double fitness(double total);
+}
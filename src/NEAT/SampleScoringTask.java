@@ -0,0 +1,38 @@
+package NEAT;
+
+import NEAT.config.NEATConfig;
+
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * fork join task scoring a single genome on a range of samples, split in halves down to
+ * NEATConfig.PARALLEL_SAMPLES_PER_TASK samples, see SampleEnvironment.scoreSamplesInParallel
+ * the split only depends on the range, so the total is summed in the same order on any number of threads
+ */
+class SampleScoringTask extends RecursiveTask<Double> {
+    private static final long serialVersionUID = 1L;
+
+    private final SampleEnvironment environment;
+    private final Genome genome;
+    private final long from;
+    private final long to;
+
+    SampleScoringTask(SampleEnvironment environment, Genome genome, long from, long to) {
+        this.environment = environment;
+        this.genome = genome;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    protected Double compute() {
+        if (to - from <= NEATConfig.PARALLEL_SAMPLES_PER_TASK) {
+            return environment.scoreSamples(genome, from, to);
+        }
+        long middle = from + (to - from) / 2;
+        SampleScoringTask right = new SampleScoringTask(environment, genome, middle, to);
+        right.fork();
+        double left = new SampleScoringTask(environment, genome, from, middle).compute();
+        return left + right.join();
+    }
+}
@@ -0,0 +1,336 @@
+package NEAT;
+
+import NEAT.config.NEATConfig;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * environment which has genomes scored by a pool of long lived external simulator processes, talking
+ * to each over its stdin and stdout
+ *
+ * evaluations are asynchronous: a request is written to the least busy simulator and completed by the
+ * reader thread of that simulator when the answer arrives, so each simulator has up to
+ * NEATConfig.SIMULATOR_PIPELINE_DEPTH requests in flight and the only threads are the caller and one
+ * reader per simulator, however many evaluations are outstanding
+ * requests past the limit wait in evaluateAsync for a slot on a live simulator to free up, so the
+ * simulators left after one dies still have no more than the pipeline depth each
+ * a request not answered within NEATConfig.SIMULATOR_TIMEOUT_MILLIS fails with a TimeoutException and
+ * frees its slot, evaluateFitness gives its genome NEATConfig.TIMEOUT_PENALTY_FITNESS and a late answer
+ * is ignored
+ *
+ * protocol, one line per message, fields separated by single spaces:
+ * request: id, gene count, each gene as innovation, into node, out node, weight, enabled 1 or 0, activation count,
+ * each activation as node and ActivationFunction name
+ * response: id, fitness
+ * responses may come in any order, a simulator in Java can read requests with decodeGenome
+ */
+public class SimulatorEnvironment implements Environment, AutoCloseable {
+    private final ArrayList<Simulator> simulators = new ArrayList<>();
+    private final Object slotFreed = new Object();
+    private final AtomicLong nextRequestId = new AtomicLong();
+    private final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "NEAT-simulator-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile boolean closed = false;
+
+    /**
+     * a single simulator process and its outstanding requests
+     */
+    private class Simulator {
+        private final Process process;
+        private final BufferedWriter writer;
+        private final Map<Long, CompletableFuture<Double>> outstanding = new ConcurrentHashMap<>();
+        private final Set<Long> expired = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger load = new AtomicInteger();
+        private volatile boolean alive = true;
+
+        Simulator(Process process, int index) {
+            this.process = process;
+            this.writer = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+            Thread reader = new Thread(this::read, "NEAT-simulator-reader-" + index);
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        /**
+         * write a request, the lock keeps lines from different callers whole
+         */
+        void send(long id, String request, CompletableFuture<Double> future) {
+            outstanding.put(id, future);
+            if (!alive) {
+                // the reader failed the outstanding requests before this one was added
+                fail(new IllegalStateException("simulator failed"));
+                return;
+            }
+            try {
+                synchronized (writer) {
+                    writer.write(request);
+                    writer.newLine();
+                    writer.flush();
+                }
+            } catch (IOException e) {
+                fail(new IllegalStateException("could not write to simulator", e));
+            }
+        }
+
+        /**
+         * body of the reader thread, completes requests as their responses arrive
+         */
+        private void read() {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int space = line.indexOf(' ');
+                    if (space < 0) {
+                        throw new IOException("unexpected simulator response: " + line);
+                    }
+                    long id = Long.parseLong(line.substring(0, space));
+                    CompletableFuture<Double> future = outstanding.remove(id);
+                    if (future == null) {
+                        if (expired.remove(id)) {
+                            // the answer to a request which already timed out
+                            continue;
+                        }
+                        throw new IOException("unexpected simulator response: " + line);
+                    }
+                    future.complete(Double.parseDouble(line.substring(space + 1).trim()));
+                }
+                fail(new IllegalStateException("simulator exited"));
+            } catch (IOException | RuntimeException e) {
+                fail(new IllegalStateException(closed ? "simulator closed" : "simulator failed", e));
+            }
+        }
+
+        /**
+         * fail a request which was not answered in time, freeing its slot
+         */
+        void expire(long id) {
+            CompletableFuture<Double> future = outstanding.remove(id);
+            if (future != null) {
+                expired.add(id);
+                future.completeExceptionally(new TimeoutException("simulator did not answer request " + id + " in time"));
+            }
+        }
+
+        /**
+         * free the slot of a request once it is answered, times out or fails
+         */
+        void release() {
+            load.decrementAndGet();
+            synchronized (slotFreed) {
+                slotFreed.notifyAll();
+            }
+        }
+
+        private void fail(IllegalStateException cause) {
+            alive = false;
+            synchronized (slotFreed) {
+                // callers waiting for a slot may have no simulators left
+                slotFreed.notifyAll();
+            }
+            for (Long id : outstanding.keySet()) {
+                CompletableFuture<Double> future = outstanding.remove(id);
+                if (future != null) {
+                    future.completeExceptionally(cause);
+                }
+            }
+        }
+    }
+
+    /**
+     * start the simulator processes
+     *
+     * @param command the command line of a simulator
+     * @param processes the number of simulators
+     * @throws IOException if a process can not be started
+     */
+    public SimulatorEnvironment(List<String> command, int processes) throws IOException {
+        timer.setRemoveOnCancelPolicy(true);
+        try {
+            for (int i = 0; i < processes; i++) {
+                ProcessBuilder builder = new ProcessBuilder(command);
+                builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+                simulators.add(new Simulator(builder.start(), i));
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void evaluateFitness(ArrayList<Genome> population) {
+        ArrayList<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (Genome genome : population) {
+            futures.add(evaluateAsync(genome).handle((fitness, failure) -> {
+                if (failure instanceof TimeoutException) {
+                    genome.setFitness(NEATConfig.TIMEOUT_PENALTY_FITNESS);
+                } else if (failure != null) {
+                    throw new CompletionException(failure);
+                } else {
+                    genome.setFitness(fitness);
+                }
+                return null;
+            }));
+        }
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("simulator evaluation failed", e.getCause());
+        }
+    }
+
+    /**
+     * send a genome to the least busy simulator, waits only while every simulator is at its pipeline depth
+     *
+     * @param genome the genome
+     * @return the fitness, completed by the reader thread of the simulator, or failed with a TimeoutException
+     */
+    public CompletableFuture<Double> evaluateAsync(Genome genome) {
+        if (closed) {
+            throw new IllegalStateException("simulator environment is closed");
+        }
+        long id = nextRequestId.getAndIncrement();
+        String request = encode(id, genome);
+        Simulator simulator = acquireSlot();
+
+        CompletableFuture<Double> future = new CompletableFuture<>();
+        future.whenComplete((fitness, failure) -> simulator.release());
+        simulator.send(id, request, future);
+        ScheduledFuture<?> timeout = timer.schedule(() -> simulator.expire(id), NEATConfig.SIMULATOR_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        future.whenComplete((fitness, failure) -> timeout.cancel(false));
+        return future;
+    }
+
+    /**
+     * take a slot on the least busy live simulator, waiting while every live simulator is at its pipeline depth
+     *
+     * @return the simulator, with its load already counting the new request
+     */
+    private Simulator acquireSlot() {
+        synchronized (slotFreed) {
+            while (true) {
+                Simulator simulator = null;
+                boolean anyAlive = false;
+                for (Simulator candidate : simulators) {
+                    if (!candidate.alive) {
+                        continue;
+                    }
+                    anyAlive = true;
+                    int load = candidate.load.get();
+                    if (load < NEATConfig.SIMULATOR_PIPELINE_DEPTH && (simulator == null || load < simulator.load.get())) {
+                        simulator = candidate;
+                    }
+                }
+                if (simulator != null) {
+                    simulator.load.incrementAndGet();
+                    return simulator;
+                }
+                if (!anyAlive) {
+                    throw new IllegalStateException("no simulators left");
+                }
+                try {
+                    slotFreed.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("interrupted while waiting for a simulator", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * encode a genome as a request line
+     *
+     * @param id the request id
+     * @param genome the genome
+     * @return the line, without a line break
+     */
+    static String encode(long id, Genome genome) {
+        StringBuilder line = new StringBuilder();
+        line.append(id);
+        GeneView genes = genome.getGeneView();
+        line.append(' ').append(genes.size());
+        for (int gene = 0; gene < genes.size(); gene++) {
+            line.append(' ').append(genes.getInnovation(gene))
+                    .append(' ').append(genes.getIntoNode(gene))
+                    .append(' ').append(genes.getOutNode(gene))
+                    .append(' ').append(genes.getWeight(gene))
+                    .append(' ').append(genes.isEnabled(gene) ? 1 : 0);
+        }
+        Map<Integer, ActivationFunction> activations = genome.getNodeActivations();
+        line.append(' ').append(activations.size());
+        for (Map.Entry<Integer, ActivationFunction> entry : activations.entrySet()) {
+            line.append(' ').append(entry.getKey()).append(' ').append(entry.getValue().name());
+        }
+        return line.toString();
+    }
+
+    /**
+     * decode the genome of a request line, for simulators written in Java
+     *
+     * @param request the request line, starting with its id
+     * @return the genome
+     */
+    public static Genome decodeGenome(String request) {
+        String[] fields = request.trim().split(" ");
+        int field = 1;
+        int geneCount = Integer.parseInt(fields[field++]);
+        ArrayList<GeneConnection> genes = new ArrayList<>(geneCount);
+        for (int i = 0; i < geneCount; i++) {
+            int innovation = Integer.parseInt(fields[field++]);
+            int into = Integer.parseInt(fields[field++]);
+            int out = Integer.parseInt(fields[field++]);
+            double weight = Double.parseDouble(fields[field++]);
+            boolean enabled = fields[field++].equals("1");
+            genes.add(new GeneConnection(into, out, innovation, weight, enabled));
+        }
+        int activationCount = Integer.parseInt(fields[field++]);
+        HashMap<Integer, ActivationFunction> activations = new HashMap<>();
+        for (int i = 0; i < activationCount; i++) {
+            int node = Integer.parseInt(fields[field++]);
+            activations.put(node, ActivationFunction.valueOf(fields[field++]));
+        }
+        return Genome.fromGenes(genes, activations);
+    }
+
+    /**
+     * stop the simulators, by closing their stdin and then killing any which are left
+     */
+    @Override
+    public void close() {
+        closed = true;
+        timer.shutdownNow();
+        for (Simulator simulator : simulators) {
+            try {
+                simulator.writer.close();
+            } catch (IOException e) {
+                // the simulator is destroyed below
+            }
+        }
+        for (Simulator simulator : simulators) {
+            simulator.process.destroy();
+        }
+    }
+}
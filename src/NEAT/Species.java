@@ -50,15 +50,15 @@ public class Species implements Comparable{
     }
 
     /**
-     * kills off the weaker 50% of genomes
+     * kills off the weaker genomes, keeping NEATConfig.SURVIVAL_RATE of them
      */
     public void killWeakGenomes() {
         sortGenomes();
-        int surviveCount = (int) Math.ceil(genomes.size() / 2f);
+        int surviveCount = (int) Math.ceil(genomes.size() * NEATConfig.SURVIVAL_RATE);
 
         ArrayList<Genome> survivors = new ArrayList<>();
         for (int i = 0; i < surviveCount; i++) {
-            survivors.add(new Genome(genomes.get(i)));
+            survivors.add(new Genome(genomes.get(i), true));
         }
         genomes = survivors;
     }
@@ -69,16 +69,28 @@ public class Species implements Comparable{
      * @return child genome
      */
     public Genome breedChild() {
+        return breedChild(null);
+    }
+
+    /**
+     * selects random parents and breeds a child from them, numbering new structure through a registry
+     *
+     * @param registry the registry shared with other gene pools, or null
+     * @return child genome
+     */
+    Genome breedChild(InnovationRegistry registry) {
         Genome child;
+        Genome parent1 = genomes.get(rand.nextInt(genomes.size()));
+        Genome parent2 = null;
         if (rand.nextFloat() < NEATConfig.CROSSOVER_CHANCE) {
-            Genome parent1 = genomes.get(rand.nextInt(genomes.size()));
-            Genome parent2 = genomes.get(rand.nextInt(genomes.size()));
+            parent2 = genomes.get(rand.nextInt(genomes.size()));
             child = Genome.breed(parent1, parent2);
         } else {
-            child = genomes.get(rand.nextInt(genomes.size()));
+            child = parent1;
         }
-        child = new Genome(child);
-        child.mutate();
+        child = new Genome(child, true);
+        child.born(parent1, parent2);
+        child.mutate(registry);
         return child;
     }
 
@@ -0,0 +1,214 @@
+package NEAT;
+
+import NEAT.config.NEATConfig;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * runs many gene pools with different PoolParameters in one JVM, sharing a work stealing executor
+ *
+ * every generation of a run is its own task, which queues the next generation of that run behind the
+ * generations of the other runs, so the runs take turns at generation granularity rather than the
+ * first runs taking every thread
+ *
+ * runs are cut by successive halving: every run is evolved for NEATConfig.SWEEP_INITIAL_GENERATIONS
+ * generations, then only the best 1 / NEATConfig.SWEEP_REDUCTION_FACTOR of them continue for
+ * NEATConfig.SWEEP_REDUCTION_FACTOR times as many generations, and so on up to the full budget
+ */
+public class SweepRunner {
+    private final ArrayList<Run> runs = new ArrayList<>();
+    private final Supplier<Environment> environmentFactory;
+    private final int parallelism;
+
+    /**
+     * a single run of a sweep
+     */
+    public static class Run {
+        private final String name;
+        private final PoolParameters parameters;
+        private final GenePool pool;
+        private final Environment environment;
+        private int generations;
+        private boolean stopped;
+
+        private Run(String name, PoolParameters parameters, Environment environment) {
+            this.name = name;
+            this.parameters = new PoolParameters(parameters);
+            this.pool = new GenePool(parameters);
+            this.environment = environment;
+        }
+
+        /**
+         * evolve a single generation, breeding first unless the pool is new, so the pool is always
+         * evaluated between steps
+         */
+        private void step() {
+            if (generations == 0) {
+                pool.initializePool();
+            } else {
+                pool.breedNewGeneration();
+            }
+            pool.evaluateFitness(environment);
+            generations++;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public PoolParameters getParameters() {
+            return parameters;
+        }
+
+        public GenePool getPool() {
+            return pool;
+        }
+
+        public int getGenerations() {
+            return generations;
+        }
+
+        /**
+         * @return true if the run was cut before the full budget of generations
+         */
+        public boolean isStopped() {
+            return stopped;
+        }
+
+        /**
+         * @return the raw fitness of the best genome so far
+         */
+        public double getBestFitness() {
+            return generations == 0 ? Double.NEGATIVE_INFINITY : pool.getTopGenome().getPoints();
+        }
+    }
+
+    /**
+     * @param environmentFactory creates the environment of each run
+     * @param parallelism the number of threads shared by all runs
+     */
+    public SweepRunner(Supplier<Environment> environmentFactory, int parallelism) {
+        this.environmentFactory = environmentFactory;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * add a configuration to the sweep
+     *
+     * @param name name of the run in the summary
+     * @param parameters the parameters of its gene pool, copied
+     */
+    public void addRun(String name, PoolParameters parameters) {
+        runs.add(new Run(name, parameters, environmentFactory.get()));
+    }
+
+    /**
+     * evolve the runs, cutting the weaker ones by successive halving
+     *
+     * @param generations the number of generations the surviving runs evolve for
+     * @return the runs, best first
+     */
+    public ArrayList<Run> run(int generations) {
+        // async mode keeps each worker's queue first in first out, so queued generations take turns
+        ForkJoinPool executor = new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+        try {
+            ArrayList<Run> active = new ArrayList<>(runs);
+            int budget = Math.min(NEATConfig.SWEEP_INITIAL_GENERATIONS, generations);
+            while (true) {
+                evolve(executor, active, budget);
+                if (budget >= generations || active.size() <= 1) {
+                    break;
+                }
+
+                active.sort(Comparator.comparingDouble(Run::getBestFitness).reversed());
+                int survivors = Math.max(1, (active.size() + NEATConfig.SWEEP_REDUCTION_FACTOR - 1) / NEATConfig.SWEEP_REDUCTION_FACTOR);
+                for (Run run : active.subList(survivors, active.size())) {
+                    run.stopped = true;
+                }
+                active = new ArrayList<>(active.subList(0, survivors));
+                budget = (int) Math.min(generations, (long) budget * NEATConfig.SWEEP_REDUCTION_FACTOR);
+            }
+
+            // a single survivor left early still gets the full budget
+            evolve(executor, active, generations);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        ArrayList<Run> results = new ArrayList<>(runs);
+        // runs which went further first, then by fitness
+        results.sort(Comparator.comparingInt(Run::getGenerations).thenComparingDouble(Run::getBestFitness));
+        Collections.reverse(results);
+        return results;
+    }
+
+    /**
+     * evolve every run up to a number of generations, one task per generation
+     *
+     * @param executor the shared executor
+     * @param active the runs to evolve
+     * @param generations the number of generations each run should reach
+     */
+    private void evolve(ForkJoinPool executor, List<Run> active, int generations) {
+        CountDownLatch done = new CountDownLatch(active.size());
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        for (Run run : active) {
+            schedule(executor, run, generations, done, failure);
+        }
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while running sweep", e);
+        }
+        if (failure.get() != null) {
+            throw new IllegalStateException("a sweep run failed", failure.get());
+        }
+    }
+
+    private void schedule(ForkJoinPool executor, Run run, int generations, CountDownLatch done, AtomicReference<Throwable> failure) {
+        if (run.generations >= generations || failure.get() != null) {
+            done.countDown();
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                run.step();
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            }
+            schedule(executor, run, generations, done, failure);
+        });
+    }
+
+    /**
+     * format runs as a table of name, generations, best fitness and whether the run was stopped
+     *
+     * @param results the runs, as returned by run
+     * @return the table
+     */
+    public static String formatSummary(List<Run> results) {
+        int width = "run".length();
+        for (Run run : results) {
+            width = Math.max(width, run.getName().length());
+        }
+        StringBuilder table = new StringBuilder();
+        table.append(String.format("%-" + width + "s  %11s  %14s  %s%n", "run", "generations", "best fitness", "status"));
+        for (Run run : results) {
+            table.append(String.format("%-" + width + "s  %11d  %14.4f  %s%n", run.getName(), run.getGenerations(),
+                    run.getBestFitness(), run.isStopped() ? "stopped" : "finished"));
+        }
+        return table.toString();
+    }
+
+    public ArrayList<Run> getRuns() {
+        return runs;
+    }
+}
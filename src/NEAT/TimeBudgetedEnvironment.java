@@ -0,0 +1,225 @@
+package NEAT;
+
+import NEAT.config.NEATConfig;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * evaluates genomes concurrently, on NEATConfig.EVALUATION_THREADS threads unless given, with another
+ * environment, giving each genome at most NEATConfig.GENOME_TIMEOUT_MILLIS from when its evaluation starts
+ * and the whole generation at most NEATConfig.GENERATION_BUDGET_MILLIS
+ * the wrapped environment is called from all the threads at once so it must be thread safe, an environment
+ * which is not has to be given a single thread
+ * genomes which run out of time, or are not started before the budget runs out, get
+ * NEATConfig.TIMEOUT_PENALTY_FITNESS so the generation always completes on schedule
+ *
+ * batch environments are given the genomes grouped by topology when NEATConfig.GROUP_BY_TOPOLOGY is set,
+ * a batch gets the time of all its genomes and all of them get the penalty if it runs out
+ * environments which need the whole population at once, such as NoveltyEnvironment, RacingEnvironment
+ * and MiniBatchEnvironment, are rejected, wrap the environment they evaluate with instead
+ *
+ * a genome which runs out of time is interrupted, environments should stop once the evaluating thread is
+ * interrupted, those that do not keep their thread busy until they finish, so the pool is left with fewer
+ * threads rather than growing
+ * genomes are evaluated as copies, their fitness and behaviour are copied back only if they finish in time
+ */
+public class TimeBudgetedEnvironment implements Environment, AutoCloseable {
+    private static final long NOT_STARTED = Long.MAX_VALUE;
+
+    private final Environment environment;
+    private final ExecutorService executor;
+    private int timedOut = 0;
+
+    /**
+     * a group of genome copies evaluated together, with the time its evaluation started
+     */
+    private static class Task {
+        final ArrayList<Genome> genomes;
+        final ArrayList<Genome> copies;
+        final GenomeBatch batch;
+        final AtomicLong started = new AtomicLong(NOT_STARTED);
+        Future<Task> future;
+
+        Task(ArrayList<Genome> genomes, ArrayList<Genome> copies, GenomeBatch batch) {
+            this.genomes = genomes;
+            this.copies = copies;
+            this.batch = batch;
+        }
+    }
+
+    /**
+     * @param environment the environment which evaluates the genomes, one genome or batch at a time
+     */
+    public TimeBudgetedEnvironment(Environment environment) {
+        this(environment, NEATConfig.EVALUATION_THREADS);
+    }
+
+    /**
+     * @param environment the environment which evaluates the genomes, one genome or batch at a time
+     * @param threads the number of genomes or batches evaluated at once, 1 for an environment which is not thread safe
+     */
+    public TimeBudgetedEnvironment(Environment environment, int threads) {
+        if (environment instanceof NoveltyEnvironment || environment instanceof RacingEnvironment
+                || environment instanceof MiniBatchEnvironment) {
+            throw new IllegalArgumentException(environment.getClass().getSimpleName()
+                    + " needs the whole population at once and can not be evaluated genome by genome");
+        }
+        this.environment = environment;
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "NEAT-evaluation");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void evaluateFitness(ArrayList<Genome> population) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(NEATConfig.GENERATION_BUDGET_MILLIS);
+        long genomeTimeout = TimeUnit.MILLISECONDS.toNanos(NEATConfig.GENOME_TIMEOUT_MILLIS);
+
+        ExecutorCompletionService<Task> completion = new ExecutorCompletionService<>(executor);
+        ArrayList<Task> running = new ArrayList<>();
+        for (Task task : createTasks(population)) {
+            task.future = completion.submit(() -> {
+                task.started.set(System.nanoTime());
+                if (task.batch != null) {
+                    ((BatchEnvironment) environment).evaluateFitness(task.batch);
+                } else {
+                    environment.evaluateFitness(task.copies);
+                }
+                return task;
+            });
+            running.add(task);
+        }
+
+        try {
+            while (!running.isEmpty()) {
+                // stop every task past its deadline and find the next deadline to wait for
+                long now = System.nanoTime();
+                long next = deadline;
+                for (int i = running.size() - 1; i >= 0; i--) {
+                    Task task = running.get(i);
+                    long started = task.started.get();
+                    long taskDeadline = started == NOT_STARTED ? deadline
+                            : Math.min(deadline, started + genomeTimeout * task.copies.size());
+                    if (now - taskDeadline >= 0) {
+                        if (task.future.cancel(true)) {
+                            penalise(task);
+                            running.remove(i);
+                        } else {
+                            // finished right at its deadline, so its result counts
+                            finish(task.future, running);
+                        }
+                    } else {
+                        next = Math.min(next, taskDeadline);
+                    }
+                }
+                if (running.isEmpty()) {
+                    break;
+                }
+
+                Future<Task> done = completion.poll(Math.max(0, next - now), TimeUnit.NANOSECONDS);
+                while (done != null) {
+                    finish(done, running);
+                    done = completion.poll();
+                }
+            }
+        } catch (InterruptedException e) {
+            cancel(running);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while evaluating fitness", e);
+        } catch (RuntimeException e) {
+            cancel(running);
+            throw e;
+        }
+    }
+
+    private static void cancel(ArrayList<Task> running) {
+        for (Task task : running) {
+            task.future.cancel(true);
+        }
+    }
+
+    /**
+     * split the population into copies evaluated on their own, or in batches by topology
+     *
+     * @param population the genomes
+     * @return the tasks
+     */
+    private ArrayList<Task> createTasks(ArrayList<Genome> population) {
+        ArrayList<Task> tasks = new ArrayList<>();
+        if (NEATConfig.GROUP_BY_TOPOLOGY && environment instanceof BatchEnvironment) {
+            for (GenomeBatch group : GenomeBatch.groupByTopology(population)) {
+                ArrayList<Genome> copies = new ArrayList<>();
+                for (Genome genome : group.getGenomes()) {
+                    copies.add(new Genome(genome, true));
+                }
+                tasks.add(new Task(group.getGenomes(), copies, new GenomeBatch(copies)));
+            }
+            return tasks;
+        }
+        for (Genome genome : population) {
+            tasks.add(new Task(new ArrayList<>(Collections.singletonList(genome)),
+                    new ArrayList<>(Collections.singletonList(new Genome(genome, true))), null));
+        }
+        return tasks;
+    }
+
+    /**
+     * copy the results of a task which finished back to its genomes
+     */
+    private void finish(Future<Task> done, ArrayList<Task> running) {
+        Task task;
+        try {
+            task = done.get();
+        } catch (CancellationException e) {
+            // already penalised when it was cancelled
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while evaluating fitness", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("failed to evaluate fitness", e.getCause());
+        }
+        if (!running.remove(task)) {
+            return;
+        }
+        for (int i = 0; i < task.genomes.size(); i++) {
+            Genome genome = task.genomes.get(i);
+            Genome copy = task.copies.get(i);
+            genome.setFitness(copy.getFitness());
+            genome.setBehaviour(copy.getBehaviour());
+        }
+    }
+
+    private void penalise(Task task) {
+        for (Genome genome : task.genomes) {
+            genome.setFitness(NEATConfig.TIMEOUT_PENALTY_FITNESS);
+            timedOut++;
+        }
+    }
+
+    /**
+     * @return the number of genomes given the penalty fitness so far
+     */
+    public int getTimedOutCount() {
+        return timedOut;
+    }
+
+    /**
+     * stop the evaluation threads, interrupting any left running
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -1,5 +1,7 @@
 package NEAT.config;
 
+import NEAT.ActivationFunction;
+
 /**
  * contains static configuration
  */
@@ -25,16 +27,204 @@ public class NEATConfig {
      */
     public static final int HIDDEN_NODES = 1000000;
 
+    /**
+     * maximum number of hidden nodes a genome can grow to through mutation
+     */
+    public static final int MAX_NODES = 100;
+
+    /**
+     * maximum number of enabled connections a genome can grow to through mutation
+     */
+    public static final int MAX_ENABLED_CONNECTIONS = 400;
+
+    /**
+     * fitness taken off a genome per enabled connection in its pruned network, 0 disables it
+     */
+    public static final double COMPLEXITY_COST = 0;
+
+    /**
+     * activation function of the output nodes
+     */
+    public static final ActivationFunction OUTPUT_ACTIVATION = ActivationFunction.STEEPENED_SIGMOID;
+
+    /**
+     * activation function given to hidden nodes when they are added
+     */
+    public static final ActivationFunction HIDDEN_ACTIVATION = ActivationFunction.STEEPENED_SIGMOID;
+
+    /**
+     * allow mutations to add recurrent connections, evaluate such genomes with Genome.stepNetwork
+     */
+    public static final boolean RECURRENT = false;
+
+    /**
+     * evaluate networks in single precision, weights are kept in both precisions
+     */
+    public static final boolean FLOAT_EVALUATION = false;
+
+    /**
+     * keep the genes of each generation off heap in a GeneArena, genomes are readable for two generations
+     * after they were last packed, copy genomes which are kept longer
+     */
+    public static final boolean OFF_HEAP_GENES = false;
+
+    /**
+     * evaluate genomes sharing a topology together when the environment is a BatchEnvironment
+     */
+    public static final boolean GROUP_BY_TOPOLOGY = false;
+
+    /**
+     * number of genomes shipped to a worker at once by the DistributedEnvironment
+     */
+    public static final int WORKER_BATCH_SIZE = 25;
+
+    /**
+     * number of batches a worker may have outstanding at once
+     */
+    public static final int WORKER_IN_FLIGHT = 2;
+
+    /**
+     * how long to wait for workers to connect before giving up, in milliseconds
+     */
+    public static final long WORKER_TIMEOUT_MILLIS = 10000;
+
+    /**
+     * how long a worker may take to answer a batch before it is sent to the other workers as well, in milliseconds
+     */
+    public static final long WORKER_BATCH_TIMEOUT_MILLIS = 60000;
+
+    /**
+     * number of requests each simulator process of a SimulatorEnvironment may have outstanding at once
+     */
+    public static final int SIMULATOR_PIPELINE_DEPTH = 16;
+
+    /**
+     * longest a SimulatorEnvironment waits for the answer to a request, in milliseconds
+     */
+    public static final long SIMULATOR_TIMEOUT_MILLIS = 60000;
+
+    /**
+     * number of samples below which SampleEnvironment.scoreSamplesInParallel stops splitting a range
+     */
+    public static final long PARALLEL_SAMPLES_PER_TASK = 8192;
+
+    /**
+     * number of generations between migrations in the IslandModel
+     */
+    public static final int MIGRATION_INTERVAL = 10;
+
+    /**
+     * number of best genomes an island sends to its neighbour on each migration
+     */
+    public static final int MIGRANTS = 3;
+
+    /**
+     * fraction of the genomes of a species which survive to breed the next generation
+     */
+    public static final float SURVIVAL_RATE = 0.5f;
+
+    /**
+     * number of samples every genome is scored on before the RacingEnvironment stops any genome, doubles each round
+     */
+    public static final long RACING_INITIAL_SAMPLES = 32;
+
+    /**
+     * chance of the RacingEnvironment wrongly stopping a genome on each check
+     */
+    public static final double RACING_CONFIDENCE = 0.05;
+
+    /**
+     * number of samples each generation is evaluated on by the MiniBatchEnvironment
+     */
+    public static final long MINI_BATCH_SIZE = 1024;
+
+    /**
+     * number of generations between revalidating the champions on every sample
+     */
+    public static final int MINI_BATCH_REVALIDATION_INTERVAL = 10;
+
+    /**
+     * number of best genomes revalidated on every sample
+     */
+    public static final int REVALIDATED_CHAMPIONS = 3;
+
+    /**
+     * number of threads a TimeBudgetedEnvironment evaluates genomes on
+     */
+    public static final int EVALUATION_THREADS = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * longest a TimeBudgetedEnvironment lets a single genome be evaluated for, in milliseconds
+     */
+    public static final long GENOME_TIMEOUT_MILLIS = 1000;
+
+    /**
+     * longest a TimeBudgetedEnvironment lets a generation be evaluated for, in milliseconds
+     */
+    public static final long GENERATION_BUDGET_MILLIS = 60000;
+
+    /**
+     * fitness given to genomes which run out of time
+     */
+    public static final double TIMEOUT_PENALTY_FITNESS = 0;
+
+    /**
+     * number of nearest behaviours the novelty of a genome is measured against
+     */
+    public static final int NOVELTY_NEIGHBOURS = 15;
+
+    /**
+     * share of novelty in the fitness used by the NoveltyEnvironment, 1 is pure novelty search
+     */
+    public static final double NOVELTY_WEIGHT = 0.5;
+
+    /**
+     * number of most novel behaviours added to the archive each generation
+     */
+    public static final int NOVELTY_ARCHIVE_ADDITIONS = 5;
+
+    /**
+     * number of records a GenealogyLog holds before logging waits for the writer thread
+     */
+    public static final int GENEALOGY_QUEUE_SIZE = 4096;
+
+    /**
+     * number of generations every run of a SweepRunner is evolved for before the weaker runs are stopped
+     */
+    public static final int SWEEP_INITIAL_GENERATIONS = 10;
+
+    /**
+     * share of sweep runs stopped at each cut is 1 - 1 / SWEEP_REDUCTION_FACTOR, the generations of the
+     * rest are multiplied by it
+     */
+    public static final int SWEEP_REDUCTION_FACTOR = 2;
+
     /**
      * size of initial genome population
      */
     public static final int POPULATION = 300;
 
     /**
-     * compatibility for two genomes to be the same species
+     * compatibility for two genomes to be the same species, the starting value when it is adjusted
      */
     public static final float COMPATIBILITY_THRESHOLD = 1f;
 
+    /**
+     * number of species the compatibility threshold is adjusted towards each generation, 0 keeps it fixed
+     * off by default, 15 is a reasonable target for the default population
+     */
+    public static final int TARGET_SPECIES = 0;
+
+    /**
+     * step the compatibility threshold is adjusted by each generation
+     */
+    public static final float COMPATIBILITY_ADJUSTMENT = 0.1f;
+
+    /**
+     * highest value the compatibility threshold is adjusted to
+     */
+    public static final float MAX_COMPATIBILITY_THRESHOLD = 5f;
+
     /**
      * weighting of excess nodes to distance function (used for species identification)
      */
@@ -0,0 +1,91 @@
+package Problems;
+
+import NEAT.DistributedEnvironment;
+import NEAT.GenePool;
+import NEAT.Genome;
+import NEAT.config.NEATConfig;
+
+import java.io.IOException;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+
+/**
+ * runs the quadratic problem with fitness evaluated by worker processes on this machine, see
+ * DistributedEnvironment, and checks every generation that the workers give each genome the same
+ * fitness as evaluating it in process
+ *
+ * usage: DistributedQuadratic [number of workers]
+ */
+public class DistributedQuadratic {
+
+    /**
+     * main method for the distributed quadratic problem
+     * @param arg0 the number of workers, 2 if not given
+     */
+    public static void main (String arg0[]) throws IOException {
+        int workers = arg0.length > 0 ? Integer.parseInt(arg0[0]) : 2;
+        Quadratic quadratic = new Quadratic();
+
+        GenePool genepool = new GenePool();
+        genepool.initializePool();
+
+        try (DistributedEnvironment distributed = new DistributedEnvironment(0)) {
+            distributed.spawnLocalWorkers(workers, Quadratic.class);
+            System.out.println(distributed.getWorkerCount() + " workers connected on port " + distributed.getPort());
+
+            int generation = 0;
+            while (true) {
+                // the workers evaluate the generation, then the same genomes are evaluated in process
+                genepool.evaluateFitness(distributed);
+                double difference = compareWithInProcess(genepool, quadratic);
+                if (difference != 0) {
+                    throw new IllegalStateException("generation " + generation + ": worker fitness differs from in process fitness by " + difference);
+                }
+
+                Genome bestGenome = genepool.getTopGenome();
+                double correctness = 100 - 100 * (25f - bestGenome.getPoints()) / 25f;
+                if (generation % 100 == 0 || correctness > NEATConfig.CORRECTNESS_THRESHOLD) {
+                    DecimalFormat df = new DecimalFormat("#.###");
+                    System.out.println("Generation : " + generation + " - correctness : " + df.format(correctness) + "% - worker fitness matches in process fitness");
+                }
+
+                if (correctness > NEATConfig.CORRECTNESS_THRESHOLD) {
+                    break;
+                }
+
+                // break after 5000 generations if no suitable solution is found
+                if (generation > 5000) {
+                    System.out.println("could not find a good enough solution");
+                    break;
+                }
+
+                genepool.breedNewGeneration();
+                generation++;
+            }
+        }
+    }
+
+    /**
+     * evaluate copies of the genomes of the gene pool in process, once it has been evaluated, and compare
+     * with the fitness the genomes were given, kept in their points
+     * with NEATConfig.COMPLEXITY_COST at 0 the two are the same
+     *
+     * @param genepool the evaluated gene pool
+     * @param quadratic the in process environment
+     * @return the largest difference in fitness
+     */
+    private static double compareWithInProcess(GenePool genepool, Quadratic quadratic) {
+        ArrayList<Genome> genomes = genepool.getTopGenomes(Integer.MAX_VALUE);
+        ArrayList<Genome> copies = new ArrayList<>();
+        for (Genome genome : genomes) {
+            copies.add(new Genome(genome));
+        }
+        quadratic.evaluateFitness(copies);
+
+        double difference = 0;
+        for (int i = 0; i < genomes.size(); i++) {
+            difference = Math.max(difference, Math.abs(genomes.get(i).getPoints() - copies.get(i).getFitness()));
+        }
+        return difference;
+    }
+}
@@ -1,8 +1,9 @@
 package Problems;
 
-import NEAT.Environment;
+import NEAT.BatchEnvironment;
 import NEAT.GenePool;
 import NEAT.Genome;
+import NEAT.GenomeBatch;
 import NEAT.config.NEATConfig;
 
 import java.text.DecimalFormat;
@@ -12,7 +13,7 @@ import java.util.ArrayList;
  * defines the quadratic problem
  * the goal here is for the algorithm to produce the values of y = x^2 for -2<=x<=2
  */
-public class Quadratic implements Environment {
+public class Quadratic implements BatchEnvironment {
 
     @Override
     public void evaluateFitness(ArrayList<Genome> population) {
@@ -41,6 +42,24 @@ public class Quadratic implements Environment {
 
     }
 
+    @Override
+    public void evaluateFitness(GenomeBatch batch) {
+        float[] fitness = new float[batch.size()];
+        double[] output = batch.createOutput();
+        for (int i = -2; i < 3; i++) {
+            double inputs[] = {i};
+            batch.evaluate(inputs, output);
+            double expected = (i * i) / 4.0;
+            for (int k = 0; k < batch.size(); k++) {
+                fitness[k] += (1 - Math.abs(expected - output[k * NEATConfig.OUTPUTS]));
+            }
+        }
+
+        for (int k = 0; k < batch.size(); k++) {
+            batch.getGenomes().get(k).setFitness(fitness[k] * fitness[k]);
+        }
+    }
+
     /**
      * main method for quadratic problem
      * @param arg0
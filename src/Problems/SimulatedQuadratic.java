@@ -0,0 +1,95 @@
+package Problems;
+
+import NEAT.GenePool;
+import NEAT.Genome;
+import NEAT.SimulatorEnvironment;
+import NEAT.config.NEATConfig;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * runs the quadratic problem with fitness evaluated by StubSimulator processes, see SimulatorEnvironment,
+ * and checks every generation that the simulators give each genome the same fitness as evaluating it
+ * in process
+ *
+ * usage: SimulatedQuadratic [number of simulators] [delay per request in milliseconds]
+ */
+public class SimulatedQuadratic {
+
+    /**
+     * main method for the simulated quadratic problem
+     * @param arg0 the number of simulators, 2 if not given, and the delay of the stub simulators, 0 if not given
+     */
+    public static void main (String arg0[]) throws IOException {
+        int simulators = arg0.length > 0 ? Integer.parseInt(arg0[0]) : 2;
+        String delay = arg0.length > 1 ? arg0[1] : "0";
+        Quadratic quadratic = new Quadratic();
+
+        GenePool genepool = new GenePool();
+        genepool.initializePool();
+
+        // the stub simulators run with the same class path as this process
+        List<String> command = Arrays.asList(Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"), StubSimulator.class.getName(), delay);
+        try (SimulatorEnvironment simulated = new SimulatorEnvironment(command, simulators)) {
+            int generation = 0;
+            while (true) {
+                // the simulators evaluate the generation, then the same genomes are evaluated in process
+                genepool.evaluateFitness(simulated);
+                double difference = compareWithInProcess(genepool, quadratic);
+                if (difference != 0) {
+                    throw new IllegalStateException("generation " + generation + ": simulator fitness differs from in process fitness by " + difference);
+                }
+
+                Genome bestGenome = genepool.getTopGenome();
+                double correctness = 100 - 100 * (25f - bestGenome.getPoints()) / 25f;
+                if (generation % 100 == 0 || correctness > NEATConfig.CORRECTNESS_THRESHOLD) {
+                    DecimalFormat df = new DecimalFormat("#.###");
+                    System.out.println("Generation : " + generation + " - correctness : " + df.format(correctness) + "% - simulator fitness matches in process fitness");
+                }
+
+                if (correctness > NEATConfig.CORRECTNESS_THRESHOLD) {
+                    break;
+                }
+
+                // break after 5000 generations if no suitable solution is found
+                if (generation > 5000) {
+                    System.out.println("could not find a good enough solution");
+                    break;
+                }
+
+                genepool.breedNewGeneration();
+                generation++;
+            }
+        }
+    }
+
+    /**
+     * evaluate copies of the genomes of the gene pool in process, once it has been evaluated, and compare
+     * with the fitness the genomes were given, kept in their points
+     * with NEATConfig.COMPLEXITY_COST at 0 and no request timing out the two are the same
+     *
+     * @param genepool the evaluated gene pool
+     * @param quadratic the in process environment
+     * @return the largest difference in fitness
+     */
+    private static double compareWithInProcess(GenePool genepool, Quadratic quadratic) {
+        ArrayList<Genome> genomes = genepool.getTopGenomes(Integer.MAX_VALUE);
+        ArrayList<Genome> copies = new ArrayList<>();
+        for (Genome genome : genomes) {
+            copies.add(new Genome(genome));
+        }
+        quadratic.evaluateFitness(copies);
+
+        double difference = 0;
+        for (int i = 0; i < genomes.size(); i++) {
+            difference = Math.max(difference, Math.abs(genomes.get(i).getPoints() - copies.get(i).getFitness()));
+        }
+        return difference;
+    }
+}
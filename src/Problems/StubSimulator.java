@@ -0,0 +1,56 @@
+package Problems;
+
+import NEAT.Genome;
+import NEAT.SimulatorEnvironment;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * stand in for an external simulator, speaks the SimulatorEnvironment protocol over stdin and stdout
+ * and scores genomes with Quadratic after a delay, answering requests out of order
+ *
+ * usage: StubSimulator [delay in milliseconds]
+ */
+public class StubSimulator {
+
+    /**
+     * main method for the stub simulator
+     * @param args the delay per request in milliseconds, 0 if not given
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        long delay = args.length > 0 ? Long.parseLong(args[0]) : 0;
+        PrintStream out = new PrintStream(System.out, false, StandardCharsets.UTF_8.name());
+        ExecutorService executor = Executors.newCachedThreadPool();
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = in.readLine()) != null) {
+            String request = line;
+            executor.execute(() -> {
+                String id = request.substring(0, request.indexOf(' '));
+                Genome genome = SimulatorEnvironment.decodeGenome(request);
+                new Quadratic().evaluateFitness(new ArrayList<>(Collections.singletonList(genome)));
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                synchronized (out) {
+                    out.println(id + " " + genome.getFitness());
+                    out.flush();
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+    }
+}
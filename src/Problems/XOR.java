@@ -1,8 +1,9 @@
 package Problems;
 
-import NEAT.Environment;
+import NEAT.BatchEnvironment;
 import NEAT.GenePool;
 import NEAT.Genome;
+import NEAT.GenomeBatch;
 import NEAT.config.NEATConfig;
 
 import java.text.DecimalFormat;
@@ -14,7 +15,7 @@ import java.util.ArrayList;
  * eg input 1,1 -> 0
  *    input 0,1 -> 1
  */
-public class XOR implements Environment {
+public class XOR implements BatchEnvironment {
 
     @Override
     public void evaluateFitness(ArrayList<Genome> population) {
@@ -45,6 +46,25 @@ public class XOR implements Environment {
         }
     }
 
+    @Override
+    public void evaluateFitness(GenomeBatch batch) {
+        float[] fitness = new float[batch.size()];
+        double[] output = batch.createOutput();
+        for (int i = 0; i < 2; i++)
+            for (int j = 0; j < 2; j++) {
+                double inputs[] = {i, j};
+                batch.evaluate(inputs, output);
+                int expected = i^j;
+                for (int k = 0; k < batch.size(); k++) {
+                    fitness[k] += (1 - Math.abs(expected - output[k * NEATConfig.OUTPUTS]));
+                }
+            }
+
+        for (int k = 0; k < batch.size(); k++) {
+            batch.getGenomes().get(k).setFitness(fitness[k] * fitness[k]);
+        }
+    }
+
     /**
      * main method for xorproblem
      * @param arg0